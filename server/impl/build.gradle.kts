@@ -9,6 +9,8 @@ dependencies {
     implementation(project(":client:jvm:common"))
 
     implementation("org.springframework.boot:spring-boot-starter-web")
+    implementation("io.micrometer:micrometer-core")
+    implementation("com.github.ben-manes.caffeine:caffeine")
     implementation("com.fasterxml.jackson.module:jackson-module-kotlin")
     implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:2.11.4")
     implementation("org.eclipse.jgit:org.eclipse.jgit:5.9.0.202009080501-r")
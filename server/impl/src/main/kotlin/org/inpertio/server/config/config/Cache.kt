@@ -0,0 +1,15 @@
+package org.inpertio.server.config.config
+
+import tech.harmonysoft.oss.inpertio.client.ConfigProvider
+
+interface CacheParametersConfigProvider : ConfigProvider<CacheParameters>
+
+/**
+ * @param resultsMaxSizeBytes   approximate max memory occupied by cached config results; non-positive value
+ *                              disables results caching
+ * @param filesMaxSizeBytes     approximate max memory occupied by cached parsed config files; non-positive value
+ *                              disables parsed files caching
+ * @param prerenderedCount      max number of most requested configs per branch which are prepared for new branch
+ *                              snapshot before it's published; non-positive value disables pre-rendering
+ */
+data class CacheParameters(val resultsMaxSizeBytes: Long, val filesMaxSizeBytes: Long, val prerenderedCount: Int)
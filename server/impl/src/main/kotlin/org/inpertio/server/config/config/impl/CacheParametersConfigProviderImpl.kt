@@ -0,0 +1,33 @@
+package org.inpertio.server.config.config.impl
+
+import org.inpertio.server.config.config.CacheParameters
+import org.inpertio.server.config.config.CacheParametersConfigProvider
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+
+@Component
+class CacheParametersConfigProviderImpl(
+    @Value("\${${Parameter.RESULTS_MAX_SIZE}:67108864}") resultsMaxSizeBytes: Long,
+    @Value("\${${Parameter.FILES_MAX_SIZE}:33554432}") filesMaxSizeBytes: Long,
+    @Value("\${${Parameter.PRERENDERED_COUNT}:16}") prerenderedCount: Int
+) : CacheParametersConfigProvider {
+
+    private val parameters = CacheParameters(resultsMaxSizeBytes, filesMaxSizeBytes, prerenderedCount)
+
+    override fun getData(): CacheParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): CacheParameters {
+        return data
+    }
+
+    private object Parameter {
+        const val RESULTS_MAX_SIZE = "config.cache.results.max.size.bytes"
+        const val FILES_MAX_SIZE = "config.cache.files.max.size.bytes"
+        const val PRERENDERED_COUNT = "config.cache.prerendered.count"
+    }
+}
@@ -0,0 +1,6 @@
+package org.inpertio.server.config.model
+
+/**
+ * @param hash      commit hash of the branch snapshot the configs are prepared for
+ */
+class BranchConfigs<T>(val hash: String, val configs: T)
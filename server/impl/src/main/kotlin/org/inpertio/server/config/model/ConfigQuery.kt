@@ -0,0 +1,9 @@
+package org.inpertio.server.config.model
+
+import org.inpertio.server.config.service.ConfigFormat
+
+/**
+ * Defines configs to prepare within a branch. Equal queries always produce equal results for the same
+ * branch snapshot.
+ */
+data class ConfigQuery(val paths: List<String>, val format: ConfigFormat<*>)
@@ -0,0 +1,27 @@
+package org.inpertio.server.config.model
+
+import org.inpertio.server.util.CompressionUtil
+import java.io.OutputStream
+
+/**
+ * Configs which are fully serialized when they are prepared. Instances are immutable and are shared between
+ * requests via results cache.
+ */
+class EncodedConfigs(val content: ByteArray, override val contentType: String) : SerializedConfigs {
+
+    override val contentLength: Long
+        get() = content.size.toLong()
+
+    override val gzipContent: ByteArray? by lazy {
+        CompressionUtil.gzip(contentLength) { it.write(content) }
+    }
+
+    override fun writeTo(output: OutputStream) {
+        output.write(content)
+        output.flush()
+    }
+
+    override fun toString(): String {
+        return "$contentType, $contentLength bytes"
+    }
+}
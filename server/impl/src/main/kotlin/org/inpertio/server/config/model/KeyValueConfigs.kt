@@ -0,0 +1,74 @@
+package org.inpertio.server.config.model
+
+import org.inpertio.server.util.CompressionUtil
+import java.io.OutputStream
+
+/**
+ * Flattened configs, every entry is exposed as a `<key>=<value>` line of UTF-8 text.
+ *
+ * Instances are immutable and are shared between requests via results cache, so, serialized content length
+ * is calculated only once per instance. The same goes for gzip-compressed content - it's prepared on the first
+ * request which accepts it and is served from the cached instance afterwards.
+ */
+class KeyValueConfigs(val values: Map<String, String>) : SerializedConfigs {
+
+    override val contentType: String
+        get() = CONTENT_TYPE
+
+    override val contentLength: Long by lazy {
+        val linesLength = values.entries.fold(0L) { length, (key, value) ->
+            length + utf8Length(key) + 1 /* '=' */ + utf8Length(value)
+        }
+        // lines are separated by '\n', there is no trailing line feed
+        linesLength + Math.max(values.size - 1, 0)
+    }
+
+    override val gzipContent: ByteArray? by lazy {
+        CompressionUtil.gzip(contentLength, this::writeTo)
+    }
+
+    override fun writeTo(output: OutputStream) {
+        val writer = output.bufferedWriter(Charsets.UTF_8)
+        var first = true
+        for ((key, value) in values) {
+            if (first) {
+                first = false
+            } else {
+                writer.write('\n'.toInt())
+            }
+            writer.write(key)
+            writer.write('='.toInt())
+            writer.write(value)
+        }
+        writer.flush()
+    }
+
+    override fun toString(): String {
+        return values.toString()
+    }
+
+    private fun utf8Length(s: String): Int {
+        var result = 0
+        var i = 0
+        while (i < s.length) {
+            val c = s[i]
+            result += when {
+                c.toInt() < 0x80 -> 1
+                c.toInt() < 0x800 -> 2
+                Character.isHighSurrogate(c) && i + 1 < s.length && Character.isLowSurrogate(s[i + 1]) -> {
+                    i++
+                    4
+                }
+                // unpaired surrogates are replaced by '?' on encoding
+                Character.isSurrogate(c) -> 1
+                else -> 3
+            }
+            i++
+        }
+        return result
+    }
+
+    companion object {
+        const val CONTENT_TYPE = "text/plain;charset=UTF-8"
+    }
+}
@@ -0,0 +1,61 @@
+package org.inpertio.server.config.model
+
+import java.io.OutputStream
+
+/**
+ * Key-level difference between two [KeyValueConfigs]. It's exposed as UTF-8 text where every line describes
+ * a single key:
+ * * `+<key>=<value>` - the key is added
+ * * `~<key>=<value>` - the key's value is changed
+ * * `-<key>` - the key is removed
+ */
+class KeyValueDiff(
+    val added: Map<String, String>,
+    val changed: Map<String, String>,
+    val removed: Collection<String>
+) {
+
+    fun writeTo(output: OutputStream) {
+        val writer = output.bufferedWriter(Charsets.UTF_8)
+        var first = true
+        val writeLine = { prefix: Char, key: String, value: String? ->
+            if (first) {
+                first = false
+            } else {
+                writer.write('\n'.toInt())
+            }
+            writer.write(prefix.toInt())
+            writer.write(key)
+            if (value != null) {
+                writer.write('='.toInt())
+                writer.write(value)
+            }
+        }
+        added.forEach { (key, value) -> writeLine('+', key, value) }
+        changed.forEach { (key, value) -> writeLine('~', key, value) }
+        removed.forEach { writeLine('-', it, null) }
+        writer.flush()
+    }
+
+    override fun toString(): String {
+        return "added: $added, changed: $changed, removed: $removed"
+    }
+
+    companion object {
+
+        fun between(previous: Map<String, String>, current: Map<String, String>): KeyValueDiff {
+            val added = LinkedHashMap<String, String>()
+            val changed = LinkedHashMap<String, String>()
+            for ((key, value) in current) {
+                val previousValue = previous[key]
+                if (previousValue == null) {
+                    added[key] = value
+                } else if (previousValue != value) {
+                    changed[key] = value
+                }
+            }
+            val removed = previous.keys.filterNot { current.containsKey(it) }
+            return KeyValueDiff(added, changed, removed)
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.inpertio.server.config.model
+
+import java.io.OutputStream
+
+/**
+ * Configs prepared in a form which is sent to clients as is
+ */
+interface SerializedConfigs {
+
+    /**
+     * Value for the `Content-Type` response header
+     */
+    val contentType: String
+
+    val contentLength: Long
+
+    /**
+     * Serialized content compressed by gzip; `null` if compression doesn't make it smaller
+     */
+    val gzipContent: ByteArray?
+
+    /**
+     * Streams serialized content to the given output stream, the stream is flushed but not closed
+     */
+    fun writeTo(output: OutputStream)
+}
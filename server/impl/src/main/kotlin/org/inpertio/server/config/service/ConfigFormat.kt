@@ -1,6 +1,6 @@
 package org.inpertio.server.config.service
 
-import java.io.File
+import org.inpertio.server.git.service.ContentFile
 
 /**
  * Generally a request for config files is processed in two steps:
@@ -11,5 +11,12 @@ import java.io.File
  */
 interface ConfigFormat<T> {
 
-    fun format(configFiles: List<File>): T
-}
\ No newline at end of file
+    fun format(configFiles: List<ContentFile>): T
+
+    /**
+     * Formatted results are cached, this method allows estimating how much memory is occupied by the given result
+     *
+     * @return  approximate number of bytes occupied by the given result
+     */
+    fun estimateSize(result: T): Long
+}
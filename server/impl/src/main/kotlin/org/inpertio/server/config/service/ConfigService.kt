@@ -1,5 +1,9 @@
 package org.inpertio.server.config.service
 
+import org.inpertio.server.config.model.BranchConfigs
+import org.inpertio.server.config.model.ConfigQuery
+import org.inpertio.server.config.model.KeyValueConfigs
+import org.inpertio.server.config.model.KeyValueDiff
 import org.inpertio.server.util.ProcessingResult
 
 interface ConfigService {
@@ -7,5 +11,45 @@ interface ConfigService {
     /**
      * Allows getting configs for the target paths in the target format
      */
-    fun <T : Any> getConfigs(branch: String, paths: List<String>, format: ConfigFormat<T>): ProcessingResult<T, String>
-}
\ No newline at end of file
+    fun <T : Any> getConfigs(
+        branch: String,
+        paths: List<String>,
+        format: ConfigFormat<T>
+    ): ProcessingResult<BranchConfigs<T>, String>
+
+    /**
+     * Prepares configs for all given queries against the same snapshot of the target branch. Equal queries
+     * are processed only once.
+     *
+     * @return  results for every given query; failure if target branch doesn't exist
+     */
+    fun getConfigs(
+        branch: String,
+        queries: Collection<ConfigQuery>
+    ): ProcessingResult<BranchConfigs<Map<ConfigQuery, ProcessingResult<Any, String>>>, String>
+
+    /**
+     * Allows checking whether configs have changed without preparing them
+     *
+     * @return  commit hash of the target branch's current snapshot; `null` if it's not available
+     */
+    fun getCurrentHash(branch: String): String?
+
+    /**
+     * Is expected to be called when a client already has configs for the target paths of the current branch
+     * snapshot, i.e. they are not prepared for its request
+     */
+    fun <T : Any> onNotModified(branch: String, paths: List<String>, format: ConfigFormat<T>)
+
+    /**
+     * Allows getting only configs which are changed since the given commit
+     *
+     * @param sinceHash     commit hash of the configs client already has
+     */
+    fun getConfigsDiff(
+        branch: String,
+        sinceHash: String,
+        paths: List<String>,
+        format: ConfigFormat<KeyValueConfigs>
+    ): ProcessingResult<BranchConfigs<KeyValueDiff>, String>
+}
@@ -0,0 +1,27 @@
+package org.inpertio.server.config.service
+
+import org.inpertio.server.util.ProcessingResult
+
+interface ConfigWatchService {
+
+    /**
+     * Starts watching config files under the target paths in the target branch
+     *
+     * @param sinceHash     commit hash of the configs client already has
+     * @param callback      is called once as soon as the branch has config files under the target paths which differ
+     *                      from the ones in the [sinceHash] commit. Receives commit hash of the branch snapshot which
+     *                      has the changes
+     * @return              a handle which allows to stop watching; failure if target branch or commit is not found
+     */
+    fun watch(
+        branch: String,
+        paths: List<String>,
+        sinceHash: String,
+        callback: (hash: String) -> Unit
+    ): ProcessingResult<ConfigWatch, String>
+}
+
+interface ConfigWatch {
+
+    fun cancel()
+}
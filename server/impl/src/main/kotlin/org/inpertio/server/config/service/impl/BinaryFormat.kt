@@ -0,0 +1,54 @@
+package org.inpertio.server.config.service.impl
+
+import org.springframework.stereotype.Component
+import java.io.DataOutputStream
+import java.io.OutputStream
+
+/**
+ * Exposes flattened configs in a compact binary form which can be decoded without any tokenizing. All numbers
+ * are big-endian 32-bit integers, strings are length-prefixed UTF-8 bytes:
+ *
+ * ```
+ * version          - single byte, currently 1
+ * strings count    - number of distinct key and value strings
+ * strings          - every string is its byte length followed by its UTF-8 bytes
+ * entries count    - number of config entries
+ * entries          - every entry is an index of its key string followed by an index of its value string
+ * ```
+ *
+ * Keys and values share the strings table, so, repeated values (hosts, ports, flags) are stored only once.
+ */
+@Component
+class BinaryFormat(keyValueFormat: KeyValueFormat) : EncodedFormat(keyValueFormat, CONTENT_TYPE) {
+
+    override fun encode(values: Map<String, String>, output: OutputStream) {
+        val indices = LinkedHashMap<String, Int>()
+        val entries = values.map { (key, value) ->
+            indices.getOrPut(key) { indices.size } to indices.getOrPut(value) { indices.size }
+        }
+
+        val data = DataOutputStream(output)
+        data.writeByte(VERSION)
+        data.writeInt(indices.size)
+        for (string in indices.keys) {
+            val bytes = string.toByteArray(Charsets.UTF_8)
+            data.writeInt(bytes.size)
+            data.write(bytes)
+        }
+        data.writeInt(entries.size)
+        for ((keyIndex, valueIndex) in entries) {
+            data.writeInt(keyIndex)
+            data.writeInt(valueIndex)
+        }
+        data.flush()
+    }
+
+    override fun toString(): String {
+        return "binary"
+    }
+
+    companion object {
+        const val CONTENT_TYPE = "application/vnd.inpertio.key-value-binary"
+        private const val VERSION = 1
+    }
+}
@@ -0,0 +1,62 @@
+package org.inpertio.server.config.service.impl
+
+import org.inpertio.server.config.service.ConfigFormat
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.ContentFile
+import org.inpertio.server.util.FileUtil
+import org.inpertio.server.util.ProcessingResult
+import org.slf4j.Logger
+import org.springframework.stereotype.Component
+
+/**
+ * Prepares configs for the target paths of the given branch snapshot in the target format. Results are cached
+ * in [ConfigResultCache].
+ */
+@Component
+class ConfigRenderer(
+    private val resultCache: ConfigResultCache,
+    private val logger: Logger
+) {
+
+    fun <T : Any> render(
+        branch: String,
+        hash: String,
+        paths: List<String>,
+        content: BranchContent,
+        format: ConfigFormat<T>
+    ): ProcessingResult<T, String> {
+        return resultCache.get(hash, normalizePaths(paths), format) {
+            prepareConfigs(branch, paths, content, format)
+        }
+    }
+
+    /**
+     * @return  given paths in the form which is used for caching
+     */
+    fun normalizePaths(paths: List<String>): List<String> {
+        return paths.map { FileUtil.normalizeRelativePath(it) ?: it }
+    }
+
+    private fun <T : Any> prepareConfigs(
+        branch: String,
+        paths: List<String>,
+        content: BranchContent,
+        format: ConfigFormat<T>
+    ): ProcessingResult<T, String> {
+        val configFiles = LinkedHashMap<String/* path */, ContentFile>()
+        for (path in paths) {
+            val files = content.listFiles(path)
+            if (files.isEmpty() && !content.exists(path)) {
+                logger.info("No path '{}' is found in branch '{}'", path, branch)
+                return ProcessingResult.failure("path '$path' doesn't exist in branch $branch")
+            }
+            for (file in files) {
+                configFiles.putIfAbsent(file.path, file)
+            }
+        }
+        if (logger.isDebugEnabled) {
+            logger.debug("Found the following config files for paths {}: {}", paths, configFiles.keys)
+        }
+        return ProcessingResult.success(format.format(configFiles.values.toList()))
+    }
+}
@@ -0,0 +1,79 @@
+package org.inpertio.server.config.service.impl
+
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics
+import org.inpertio.server.config.config.CacheParametersConfigProvider
+import org.inpertio.server.config.service.ConfigFormat
+import org.inpertio.server.util.ProcessingResult
+import org.springframework.stereotype.Component
+
+/**
+ * Branch snapshot for a particular commit never changes, so, config results prepared for it can be re-used
+ * until the branch moves to another commit. Results are cached by commit hash, requested paths and
+ * target format, least recently used results are evicted when cache size exceeds configured limit.
+ */
+@Component
+class ConfigResultCache(
+    parametersConfigProvider: CacheParametersConfigProvider,
+    meterRegistry: MeterRegistry
+) {
+
+    private val maxSizeBytes = parametersConfigProvider.data.resultsMaxSizeBytes
+
+    private val cache: Cache<Key, Entry> = Caffeine.newBuilder()
+        .maximumWeight(Math.max(maxSizeBytes, 0L))
+        .weigher<Key, Entry> { key, entry ->
+            Math.min(key.estimateSize() + entry.sizeBytes, Int.MAX_VALUE.toLong()).toInt()
+        }
+        .recordStats()
+        .build()
+
+    init {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME)
+    }
+
+    /**
+     * @return  cached result for the given arguments if any; result of the given computation otherwise
+     */
+    fun <T : Any> get(
+        hash: String,
+        paths: List<String>,
+        format: ConfigFormat<T>,
+        compute: () -> ProcessingResult<T, String>
+    ): ProcessingResult<T, String> {
+        if (maxSizeBytes <= 0) {
+            return compute()
+        }
+        // failures are not cached because they refer to the requested branch and not to the commit
+        var failure: ProcessingResult<T, String>? = null
+        val entry = cache.get(Key(hash, paths, format)) {
+            val result = compute()
+            if (result.success) {
+                Entry(result, format.estimateSize(result.successValue))
+            } else {
+                failure = result
+                null
+            }
+        }
+        @Suppress("UNCHECKED_CAST")
+        return (entry?.result as ProcessingResult<T, String>?) ?: failure ?: compute()
+    }
+
+    private data class Key(val hash: String, val paths: List<String>, val format: ConfigFormat<*>) {
+
+        fun estimateSize(): Long {
+            return OBJECT_OVERHEAD_BYTES + hash.length * 2 + paths.fold(0L) { size, path ->
+                size + OBJECT_OVERHEAD_BYTES + path.length * 2
+            }
+        }
+    }
+
+    private class Entry(val result: ProcessingResult<*, String>, val sizeBytes: Long)
+
+    companion object {
+        private const val CACHE_NAME = "inpertio.config.results"
+        private const val OBJECT_OVERHEAD_BYTES = 48L
+    }
+}
@@ -1,18 +1,21 @@
 package org.inpertio.server.config.service.impl
 
+import org.inpertio.server.config.model.BranchConfigs
+import org.inpertio.server.config.model.ConfigQuery
+import org.inpertio.server.config.model.KeyValueConfigs
+import org.inpertio.server.config.model.KeyValueDiff
 import org.inpertio.server.config.service.ConfigFormat
 import org.inpertio.server.config.service.ConfigService
 import org.inpertio.server.git.service.GitService
 import org.inpertio.server.util.ProcessingResult
 import org.slf4j.Logger
 import org.springframework.stereotype.Component
-import java.io.File
-import java.util.*
-import kotlin.collections.LinkedHashSet
 
 @Component
 class ConfigServiceImpl(
     private val gitService: GitService,
+    private val renderer: ConfigRenderer,
+    private val prerenderer: HotConfigsPrerenderer,
     private val logger: Logger
 ) : ConfigService {
 
@@ -20,37 +23,90 @@ class ConfigServiceImpl(
         branch: String,
         paths: List<String>,
         format: ConfigFormat<T>
-    ): ProcessingResult<T, String> {
+    ): ProcessingResult<BranchConfigs<T>, String> {
         logger.debug("Got a request to get configs for paths {} in branch '{}' with format", paths, branch, format)
-        val result = gitService.withBranch<ProcessingResult<T, String>>(branch) { _, rootDir ->
-            val inputFiles = paths.map { path ->
-                File(rootDir, path).apply {
-                    if (!exists()) {
-                        logger.info("No path '{}' is found in branch '{}'", path, branch)
-                        return@withBranch ProcessingResult.failure("path '$path' doesn't exist in branch $branch")
-                    }
-                }
+        val result = gitService.withBranch<ProcessingResult<BranchConfigs<T>, String>>(branch) { hash, content ->
+            val renderResult = renderer.render(branch, hash, paths, content, format)
+            if (renderResult.success) {
+                ProcessingResult.success(BranchConfigs(hash, renderResult.successValue))
+            } else {
+                ProcessingResult.failure(renderResult.failureValue)
             }
-            if (logger.isDebugEnabled) {
-                logger.debug("Found the following config files for paths {}: {}",
-                             paths, inputFiles.map(File::getAbsolutePath))
-            }
-            ProcessingResult.success(getConfigs(inputFiles, format))
         }
         return if (result == null) {
             logger.info("Can't return {} configs for paths {} in branch '{}' - the branch doesn't exist",
                         format, paths, branch)
             ProcessingResult.failure("branch '$branch' doesn't exist")
         } else {
+            if (result.success) {
+                prerenderer.onRequest(branch, paths, format)
+            }
             result
         }
     }
 
-    private fun <T> getConfigs(inputFiles: List<File>, format: ConfigFormat<T>): T {
-        val configFiles = LinkedHashSet<File>()
-        for (file in inputFiles) {
-            file.walkTopDown().filter(File::isFile).forEach(configFiles::add)
+    override fun getConfigs(
+        branch: String,
+        queries: Collection<ConfigQuery>
+    ): ProcessingResult<BranchConfigs<Map<ConfigQuery, ProcessingResult<Any, String>>>, String> {
+        val uniqueQueries = queries.toSet()
+        logger.debug("Got a request to get configs for {} queries in branch '{}': {}",
+                     uniqueQueries.size, branch, uniqueQueries)
+        val result = gitService.withBranch(branch, GitService.Action { hash, content ->
+            BranchConfigs(hash, uniqueQueries.associateWith {
+                @Suppress("UNCHECKED_CAST")
+                renderer.render(branch, hash, it.paths, content, it.format as ConfigFormat<Any>)
+            })
+        })
+        if (result == null) {
+            logger.info("Can't return configs for {} queries in branch '{}' - the branch doesn't exist",
+                        uniqueQueries.size, branch)
+            return ProcessingResult.failure("branch '$branch' doesn't exist")
+        }
+        for ((query, queryResult) in result.configs) {
+            if (queryResult.success) {
+                prerenderer.onRequest(branch, query.paths, query.format)
+            }
+        }
+        return ProcessingResult.success(result)
+    }
+
+    override fun getCurrentHash(branch: String): String? {
+        return gitService.getCurrentHash(branch)
+    }
+
+    override fun <T : Any> onNotModified(branch: String, paths: List<String>, format: ConfigFormat<T>) {
+        prerenderer.onRequest(branch, paths, format)
+    }
+
+    override fun getConfigsDiff(
+        branch: String,
+        sinceHash: String,
+        paths: List<String>,
+        format: ConfigFormat<KeyValueConfigs>
+    ): ProcessingResult<BranchConfigs<KeyValueDiff>, String> {
+        val currentResult = getConfigs(branch, paths, format)
+        if (!currentResult.success) {
+            return ProcessingResult.failure(currentResult.failureValue)
+        }
+        val current = currentResult.successValue
+        val previous = if (current.hash == sinceHash) {
+            current.configs
+        } else {
+            val previousResult = gitService.withCommit(branch, sinceHash, GitService.Action { hash, content ->
+                renderer.render(branch, hash, paths, content, format)
+            })
+            if (previousResult == null) {
+                logger.info("Can't build configs diff for paths {} in branch '{}' - commit {} is not found in it",
+                            paths, branch, sinceHash)
+                return ProcessingResult.failure("commit '$sinceHash' is not found in branch '$branch'")
+            }
+            // requested paths might be absent in the previous commit, all current keys are added then
+            if (previousResult.success) previousResult.successValue else null
         }
-        return format.format(configFiles.toList())
+        val diff = KeyValueDiff.between(previous?.values ?: emptyMap(), current.configs.values)
+        logger.debug("Prepared configs diff for paths {} in branch '{}' between {} and {}: {}",
+                     paths, branch, sinceHash, current.hash, diff)
+        return ProcessingResult.success(BranchConfigs(current.hash, diff))
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package org.inpertio.server.config.service.impl
+
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics
+import org.inpertio.server.config.service.ConfigWatch
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.BranchSnapshotListener
+import org.slf4j.Logger
+import org.springframework.stereotype.Component
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Holds active config watches and notifies them when new branch snapshot has changes in the watched paths.
+ *
+ * Config files under the watched paths are identified by a fingerprint built from their paths and blob ids,
+ * so, a watch is not notified about new commits which don't touch its paths. Fingerprints of the commits
+ * clients watch since are cached, that way clients which re-watch since the same commit don't cause re-listing
+ * its files.
+ */
+@Component
+class ConfigWatchRegistry(
+    meterRegistry: MeterRegistry,
+    private val logger: Logger
+) : BranchSnapshotListener {
+
+    private val watches = ConcurrentHashMap<String/* branch */, MutableSet<Watch>>()
+    private val fingerprints: Cache<FingerprintKey, String> = Caffeine.newBuilder()
+        .maximumSize(FINGERPRINTS_CACHE_SIZE)
+        .recordStats()
+        .build()
+
+    init {
+        CaffeineCacheMetrics.monitor(meterRegistry, fingerprints, FINGERPRINTS_CACHE_NAME)
+    }
+
+    val watchesCount: Int
+        get() = watches.values.sumBy { it.size }
+
+    /**
+     * @param fingerprint   fingerprint of the config files client already has
+     */
+    fun register(
+        branch: String,
+        paths: List<String>,
+        fingerprint: String,
+        callback: (hash: String) -> Unit
+    ): Watch {
+        val watch = Watch(branch, paths, fingerprint, callback)
+        watches.compute(branch) { _, branchWatches ->
+            (branchWatches ?: ConcurrentHashMap.newKeySet()).apply {
+                add(watch)
+            }
+        }
+        return watch
+    }
+
+    /**
+     * @param hash  hash of the commit given content belongs to
+     * @return      fingerprint of the config files under the given paths in the given content
+     */
+    fun getFingerprint(hash: String, content: BranchContent, paths: List<String>): String {
+        return fingerprints.get(FingerprintKey(hash, paths)) {
+            buildFingerprint(content, paths)
+        }
+    }
+
+    private fun buildFingerprint(content: BranchContent, paths: List<String>): String {
+        val digest = MessageDigest.getInstance("SHA-1")
+        for (path in paths) {
+            val files = content.listFiles(path)
+            if (files.isEmpty() && !content.exists(path)) {
+                digest.update("!$path\n".toByteArray())
+            }
+            for (file in files) {
+                digest.update("${file.path}:${file.blobId}\n".toByteArray())
+            }
+        }
+        return digest.digest().joinToString(separator = "") { String.format("%02x", it) }
+    }
+
+    override fun onSnapshotPublished(branch: String, hash: String, content: BranchContent) {
+        val branchWatches = watches[branch] ?: return
+        // there might be much more distinct watched paths than the shared cache holds, so, a local memo is used
+        // to compute every fingerprint only once per snapshot
+        val fingerprints = mutableMapOf<List<String>, String>()
+        var notifiedWatchesCount = 0
+        for (watch in branchWatches) {
+            val fingerprint = fingerprints.getOrPut(watch.paths) { buildFingerprint(content, watch.paths) }
+            if (fingerprint != watch.fingerprint && watch.fire(hash)) {
+                notifiedWatchesCount++
+            }
+        }
+        logger.debug("Notified {} of {} watches for branch '{}' about new snapshot at {}",
+                     notifiedWatchesCount, branchWatches.size, branch, hash)
+    }
+
+    inner class Watch(
+        private val branch: String,
+        val paths: List<String>,
+        val fingerprint: String,
+        private val callback: (hash: String) -> Unit
+    ) : ConfigWatch {
+
+        private val active = AtomicBoolean(true)
+
+        /**
+         * @return  `true` if the watch is notified; `false` if it's already notified or cancelled
+         */
+        fun fire(hash: String): Boolean {
+            if (!active.compareAndSet(true, false)) {
+                return false
+            }
+            remove()
+            try {
+                callback(hash)
+            } catch (e: Throwable) {
+                logger.warn("Got an exception on attempt to notify watch for paths {} in branch '{}' about commit {}",
+                            paths, branch, hash, e)
+            }
+            return true
+        }
+
+        override fun cancel() {
+            if (active.compareAndSet(true, false)) {
+                remove()
+            }
+        }
+
+        private fun remove() {
+            watches.computeIfPresent(branch) { _, branchWatches ->
+                branchWatches.remove(this)
+                if (branchWatches.isEmpty()) {
+                    null
+                } else {
+                    branchWatches
+                }
+            }
+        }
+    }
+
+    private data class FingerprintKey(val hash: String, val paths: List<String>)
+
+    companion object {
+        private const val FINGERPRINTS_CACHE_NAME = "inpertio.config.watch.fingerprints"
+        private const val FINGERPRINTS_CACHE_SIZE = 1024L
+    }
+}
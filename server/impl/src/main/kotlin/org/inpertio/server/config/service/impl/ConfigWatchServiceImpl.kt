@@ -0,0 +1,59 @@
+package org.inpertio.server.config.service.impl
+
+import org.inpertio.server.config.service.ConfigWatch
+import org.inpertio.server.config.service.ConfigWatchService
+import org.inpertio.server.git.service.GitService
+import org.inpertio.server.util.ProcessingResult
+import org.slf4j.Logger
+import org.springframework.stereotype.Component
+
+@Component
+class ConfigWatchServiceImpl(
+    private val gitService: GitService,
+    private val registry: ConfigWatchRegistry,
+    private val logger: Logger
+) : ConfigWatchService {
+
+    override fun watch(
+        branch: String,
+        paths: List<String>,
+        sinceHash: String,
+        callback: (hash: String) -> Unit
+    ): ProcessingResult<ConfigWatch, String> {
+        val sinceFingerprint = getSinceFingerprint(branch, paths, sinceHash)
+        if (sinceFingerprint == null) {
+            logger.info("Can't watch paths {} in branch '{}' - commit {} is not found in it",
+                        paths, branch, sinceHash)
+            return ProcessingResult.failure("commit '$sinceHash' is not found in branch '$branch'")
+        }
+
+        val watch = registry.register(branch, paths, sinceFingerprint, callback)
+        // current snapshot is checked after the watch is registered, that way a snapshot which is published
+        // concurrently is not missed
+        val current = gitService.withBranch(branch, GitService.Action { hash, content ->
+            hash to registry.getFingerprint(hash, content, paths)
+        })
+        if (current == null) {
+            watch.cancel()
+            logger.info("Can't watch paths {} in branch '{}' - the branch doesn't exist", paths, branch)
+            return ProcessingResult.failure("branch '$branch' doesn't exist")
+        }
+        if (current.second != sinceFingerprint) {
+            watch.fire(current.first)
+        } else {
+            logger.debug("Started watching paths {} in branch '{}' since {}, {} watches are active",
+                         paths, branch, sinceHash, registry.watchesCount)
+        }
+        return ProcessingResult.success(watch)
+    }
+
+    private fun getSinceFingerprint(branch: String, paths: List<String>, sinceHash: String): String? {
+        // clients usually watch since the current branch commit, its snapshot is already at hand then
+        val currentFingerprint = gitService.withBranch(branch, GitService.Action { hash, content ->
+            if (hash == sinceHash) registry.getFingerprint(hash, content, paths) else null
+        })
+        return currentFingerprint ?: gitService.withCommit(branch, sinceHash, GitService.Action { hash, content ->
+            registry.getFingerprint(hash, content, paths)
+        })
+    }
+}
@@ -0,0 +1,35 @@
+package org.inpertio.server.config.service.impl
+
+import org.inpertio.server.config.model.EncodedConfigs
+import org.inpertio.server.config.service.ConfigFormat
+import org.inpertio.server.git.service.ContentFile
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+
+/**
+ * Base class for formats which encode flattened [KeyValueFormat] configs into a self-contained byte
+ * representation. Flattened config files are shared with [KeyValueFormat] via its parsed files cache.
+ */
+abstract class EncodedFormat(
+    private val keyValueFormat: KeyValueFormat,
+    private val contentType: String
+) : ConfigFormat<EncodedConfigs> {
+
+    override fun format(configFiles: List<ContentFile>): EncodedConfigs {
+        val values = keyValueFormat.format(configFiles).values
+        val output = ByteArrayOutputStream()
+        encode(values, output)
+        return EncodedConfigs(output.toByteArray(), contentType)
+    }
+
+    protected abstract fun encode(values: Map<String, String>, output: OutputStream)
+
+    override fun estimateSize(result: EncodedConfigs): Long {
+        // cached result might also hold its gzip-compressed content
+        return OVERHEAD_BYTES + result.contentLength + result.contentLength / 4
+    }
+
+    companion object {
+        private const val OVERHEAD_BYTES = 64L
+    }
+}
@@ -0,0 +1,82 @@
+package org.inpertio.server.config.service.impl
+
+import org.inpertio.server.config.config.CacheParametersConfigProvider
+import org.inpertio.server.config.service.ConfigFormat
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.BranchSnapshotListener
+import org.slf4j.Logger
+import org.springframework.stereotype.Component
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Many clients poll the same configs, so, when a branch moves to a new commit, all of them would request
+ * configs for the new snapshot at once and wait for the same results to be prepared. This class tracks
+ * most requested configs per branch and renders them for the new snapshot before it's published, that way
+ * new snapshot becomes visible with the results already cached.
+ *
+ * Configs are tracked between two consecutive snapshots of the same branch.
+ */
+@Component
+class HotConfigsPrerenderer(
+    private val renderer: ConfigRenderer,
+    parametersConfigProvider: CacheParametersConfigProvider,
+    private val logger: Logger
+) : BranchSnapshotListener {
+
+    private val prerenderedCount = parametersConfigProvider.data.prerenderedCount
+    private val requests = ConcurrentHashMap<String/* branch */, ConcurrentHashMap<HotConfig, AtomicLong>>()
+
+    /**
+     * Is expected to be called once per successfully served request, including `304 Not Modified` responses
+     */
+    fun onRequest(branch: String, paths: List<String>, format: ConfigFormat<*>) {
+        if (prerenderedCount <= 0) {
+            return
+        }
+        val branchRequests = requests.computeIfAbsent(branch) { ConcurrentHashMap() }
+        val config = HotConfig(renderer.normalizePaths(paths), format)
+        val counter = branchRequests[config] ?: if (branchRequests.size < MAX_TRACKED_CONFIGS_PER_BRANCH) {
+            branchRequests.computeIfAbsent(config) { AtomicLong() }
+        } else {
+            return
+        }
+        counter.incrementAndGet()
+    }
+
+    override fun onSnapshotPrepared(branch: String, hash: String, content: BranchContent) {
+        val branchRequests = requests.remove(branch) ?: return
+        val hotConfigs = branchRequests.entries
+            .map { it.key to it.value.get() }
+            .sortedByDescending { it.second }
+            .take(prerenderedCount)
+            .map { it.first }
+        val startTimeMs = System.currentTimeMillis()
+        for (config in hotConfigs) {
+            @Suppress("UNCHECKED_CAST")
+            val format = config.format as ConfigFormat<Any>
+            // a broken config, e.g. malformed YAML, shouldn't prevent other configs from being pre-rendered
+            val result = try {
+                renderer.render(branch, hash, config.paths, content, format)
+            } catch (e: Exception) {
+                logger.info("Got an exception on attempt to pre-render {} configs for paths {} in branch '{}' at {}",
+                            format, config.paths, branch, hash, e)
+                continue
+            }
+            if (!result.success) {
+                logger.debug("Failed to pre-render {} configs for paths {} in branch '{}' at {}: {}",
+                             format, config.paths, branch, hash, result.failureValue)
+            }
+        }
+        if (hotConfigs.isNotEmpty()) {
+            logger.info("Pre-rendered {} most requested configs for branch '{}' at {} in {} ms",
+                        hotConfigs.size, branch, hash, System.currentTimeMillis() - startTimeMs)
+        }
+    }
+
+    private data class HotConfig(val paths: List<String>, val format: ConfigFormat<*>)
+
+    companion object {
+        private const val MAX_TRACKED_CONFIGS_PER_BRANCH = 1000
+    }
+}
@@ -0,0 +1,30 @@
+package org.inpertio.server.config.service.impl
+
+import com.fasterxml.jackson.core.JsonEncoding
+import com.fasterxml.jackson.core.JsonFactory
+import org.springframework.http.MediaType
+import org.springframework.stereotype.Component
+import java.io.OutputStream
+
+/**
+ * Exposes flattened configs as a JSON object with string values, e.g. `{"a.b[0].c":"value"}`
+ */
+@Component
+class JsonFormat(keyValueFormat: KeyValueFormat) : EncodedFormat(keyValueFormat, MediaType.APPLICATION_JSON_VALUE) {
+
+    private val jsonFactory = JsonFactory()
+
+    override fun encode(values: Map<String, String>, output: OutputStream) {
+        jsonFactory.createGenerator(output, JsonEncoding.UTF8).use { generator ->
+            generator.writeStartObject()
+            for ((key, value) in values) {
+                generator.writeStringField(key, value)
+            }
+            generator.writeEndObject()
+        }
+    }
+
+    override fun toString(): String {
+        return "json"
+    }
+}
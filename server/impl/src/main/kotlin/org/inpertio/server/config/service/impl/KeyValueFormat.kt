@@ -1,41 +1,153 @@
 package org.inpertio.server.config.service.impl
 
-import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics
+import org.inpertio.server.config.config.CacheParametersConfigProvider
+import org.inpertio.server.config.model.KeyValueConfigs
 import org.inpertio.server.config.service.ConfigFormat
+import org.inpertio.server.git.service.ContentFile
 import org.springframework.stereotype.Component
-import java.io.File
 
 @Component
-class KeyValueFormat : ConfigFormat<Map<String, String>> {
+class KeyValueFormat(
+    parametersConfigProvider: CacheParametersConfigProvider,
+    meterRegistry: MeterRegistry
+) : ConfigFormat<KeyValueConfigs> {
 
-    private val mapper = ObjectMapper(YAMLFactory())
+    private val yamlFactory = YAMLFactory()
 
-    override fun format(configFiles: List<File>): Map<String, String> {
-        return configFiles.fold(mutableMapOf()) { holder, file ->
-            add(holder, file)
+    /**
+     * Most files are not changed between commits and are shared by branches, so, flattened file content is cached
+     * by git blob id. That way only changed files are parsed when a branch moves to a new commit.
+     */
+    private val filesMaxSizeBytes = parametersConfigProvider.data.filesMaxSizeBytes
+    private val files: Cache<String/* blob id */, Map<String, String>> = Caffeine.newBuilder()
+        .maximumWeight(Math.max(filesMaxSizeBytes, 0L))
+        .weigher<String, Map<String, String>> { _, data ->
+            Math.min(estimateSize(data), Int.MAX_VALUE.toLong()).toInt()
+        }
+        .recordStats()
+        .build()
+
+    init {
+        CaffeineCacheMetrics.monitor(meterRegistry, files, FILES_CACHE_NAME)
+    }
+
+    override fun format(configFiles: List<ContentFile>): KeyValueConfigs {
+        return KeyValueConfigs(configFiles.fold(mutableMapOf()) { holder, file ->
+            holder.putAll(getFileData(file))
             holder
+        })
+    }
+
+    private fun getFileData(file: ContentFile): Map<String, String> {
+        return if (filesMaxSizeBytes > 0) {
+            files.get(file.blobId) {
+                parse(file)
+            }
+        } else {
+            parse(file)
+        }
+    }
+
+    /**
+     * Flattens given YAML file right from its tokens stream without building intermediate objects tree.
+     * Keys are accumulated in a single buffer, e.g. the following YAML
+     *
+     * ```
+     * a:
+     *   b:
+     *     - c: value
+     * ```
+     *
+     * results in `a.b[0].c=value`
+     */
+    private fun parse(file: ContentFile): Map<String, String> {
+        val holder = mutableMapOf<String, String>()
+        file.openStream().use {
+            val parser = yamlFactory.createParser(it)
+            try {
+                val token = parser.nextToken() ?: return holder
+                if (token != JsonToken.START_OBJECT) {
+                    throw IllegalArgumentException("Expected config file '${file.path}' to hold a map but got $token")
+                }
+                addObject(parser, holder, StringBuilder(), true)
+            } finally {
+                parser.close()
+            }
+        }
+        return holder
+    }
+
+    private fun addObject(parser: JsonParser, holder: MutableMap<String, String>, key: StringBuilder, root: Boolean) {
+        val keyLength = key.length
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (!root) {
+                key.append('.')
+            }
+            key.append(parser.currentName)
+            addValue(parser, parser.nextToken(), holder, key)
+            key.setLength(keyLength)
         }
     }
 
-    private fun add(holder: MutableMap<String, String>, file: File) {
-        val configData = mapper.readValue(file, Map::class.java)
-        add(holder, configData, emptyList())
+    private fun addArray(parser: JsonParser, holder: MutableMap<String, String>, key: StringBuilder) {
+        val keyLength = key.length
+        var i = 0
+        var token = parser.nextToken()
+        while (token != null && token != JsonToken.END_ARRAY) {
+            key.append('[').append(i++).append(']')
+            addValue(parser, token, holder, key)
+            key.setLength(keyLength)
+            token = parser.nextToken()
+        }
     }
 
-    private fun add(holder: MutableMap<String, String>, config: Any, path: List<String>) {
-        when (config) {
-            is Map<*, *> -> for ((key, value) in config) {
-                add(holder, value as Any, path + key.toString())
+    private fun addValue(
+        parser: JsonParser,
+        token: JsonToken?,
+        holder: MutableMap<String, String>,
+        key: StringBuilder
+    ) {
+        when (token) {
+            JsonToken.START_OBJECT -> addObject(parser, holder, key, false)
+            JsonToken.START_ARRAY -> addArray(parser, holder, key)
+            JsonToken.VALUE_NUMBER_INT, JsonToken.VALUE_NUMBER_FLOAT -> {
+                holder[key.toString()] = parser.numberValue.toString()
+            }
+            JsonToken.VALUE_TRUE, JsonToken.VALUE_FALSE -> holder[key.toString()] = parser.booleanValue.toString()
+            JsonToken.VALUE_EMBEDDED_OBJECT -> parser.embeddedObject?.let {
+                holder[key.toString()] = it.toString()
             }
-            is Collection<*> -> config.forEachIndexed { i, value ->
-                add(holder, value as Any, path.subList(0, path.size - 1) + (path.last() + "[$i]"))
+            JsonToken.VALUE_NULL, null -> {
             }
-            else -> holder[path.joinToString(".")] = config.toString()
+            else -> holder[key.toString()] = parser.text
+        }
+    }
+
+    override fun estimateSize(result: KeyValueConfigs): Long {
+        // cached result might also hold its gzip-compressed content, key/value text usually compresses 5-10 times
+        return estimateSize(result.values) + result.contentLength / 5
+    }
+
+    private fun estimateSize(result: Map<String, String>): Long {
+        return result.entries.fold(MAP_OVERHEAD_BYTES) { size, (key, value) ->
+            size + ENTRY_OVERHEAD_BYTES + (key.length + value.length) * 2
         }
     }
 
     override fun toString(): String {
         return "key/value"
     }
-}
\ No newline at end of file
+
+    companion object {
+        private const val FILES_CACHE_NAME = "inpertio.config.files"
+        private const val MAP_OVERHEAD_BYTES = 64L
+        private const val ENTRY_OVERHEAD_BYTES = 128L
+    }
+}
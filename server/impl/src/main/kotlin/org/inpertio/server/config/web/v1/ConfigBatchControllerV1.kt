@@ -0,0 +1,101 @@
+package org.inpertio.server.config.web.v1
+
+import com.fasterxml.jackson.annotation.JsonInclude
+import com.fasterxml.jackson.databind.util.RawValue
+import org.inpertio.server.config.model.ConfigQuery
+import org.inpertio.server.config.model.EncodedConfigs
+import org.inpertio.server.config.model.KeyValueConfigs
+import org.inpertio.server.config.service.ConfigFormat
+import org.inpertio.server.config.service.ConfigService
+import org.inpertio.server.config.service.impl.BinaryFormat
+import org.inpertio.server.config.service.impl.JsonFormat
+import org.inpertio.server.config.service.impl.KeyValueFormat
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.http.ResponseEntity
+import org.springframework.web.bind.annotation.PostMapping
+import org.springframework.web.bind.annotation.RequestBody
+import org.springframework.web.bind.annotation.RestController
+
+/**
+ * Allows getting configs for multiple (branch, paths, format) queries in a single round trip. All queries
+ * for the same branch are processed against the same branch snapshot.
+ */
+@RestController
+class ConfigBatchControllerV1(
+    private val service: ConfigService,
+    keyValueFormat: KeyValueFormat,
+    jsonFormat: JsonFormat,
+    binaryFormat: BinaryFormat
+) {
+
+    private val formats = mapOf<String, ConfigFormat<*>>(
+            KEY_VALUE_FORMAT to keyValueFormat,
+            "json" to jsonFormat,
+            "binary" to binaryFormat
+    )
+
+    @PostMapping("/api/batch/v1")
+    fun getConfigs(@RequestBody request: BatchRequest): ResponseEntity<Any> {
+        val unknownFormats = request.queries.map { it.format }.filterNot { formats.containsKey(it) }.distinct()
+        if (unknownFormats.isNotEmpty()) {
+            return ResponseEntity("unknown formats: $unknownFormats, available formats: ${formats.keys}",
+                                  HttpStatus.BAD_REQUEST)
+        }
+
+        val results = request.queries.groupBy { it.branch }.mapValues { (branch, queries) ->
+            service.getConfigs(branch, queries.map { toConfigQuery(it) })
+        }
+        return ResponseEntity.ok(BatchResponse(request.queries.map { query ->
+            val branchResult = results.getValue(query.branch)
+            if (branchResult.success) {
+                val hash = branchResult.successValue.hash
+                val result = branchResult.successValue.configs.getValue(toConfigQuery(query))
+                if (result.success) {
+                    BatchResult(query, hash = hash, configs = toResponseConfigs(result.successValue))
+                } else {
+                    BatchResult(query, hash = hash, error = result.failureValue)
+                }
+            } else {
+                BatchResult(query, error = branchResult.failureValue)
+            }
+        }))
+    }
+
+    private fun toConfigQuery(query: BatchQuery): ConfigQuery {
+        val paths = query.paths.flatMap { it.split(",") }.filter(String::isNotBlank)
+        return ConfigQuery(paths, formats.getValue(query.format))
+    }
+
+    /**
+     * JSON configs are embedded into the response as is, binary configs are exposed as base64 strings
+     */
+    private fun toResponseConfigs(configs: Any): Any {
+        return when {
+            configs is KeyValueConfigs -> configs.values
+            configs is EncodedConfigs && configs.contentType == MediaType.APPLICATION_JSON_VALUE -> {
+                RawValue(String(configs.content, Charsets.UTF_8))
+            }
+            configs is EncodedConfigs -> configs.content
+            else -> configs
+        }
+    }
+
+    data class BatchRequest(val queries: List<BatchQuery>)
+
+    data class BatchQuery(val branch: String, val paths: List<String>, val format: String = KEY_VALUE_FORMAT)
+
+    data class BatchResponse(val results: List<BatchResult>)
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    data class BatchResult(
+        val query: BatchQuery,
+        val hash: String? = null,
+        val configs: Any? = null,
+        val error: String? = null
+    )
+
+    companion object {
+        private const val KEY_VALUE_FORMAT = "keyValue"
+    }
+}
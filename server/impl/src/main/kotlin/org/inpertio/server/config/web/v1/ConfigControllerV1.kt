@@ -1,29 +1,170 @@
 package org.inpertio.server.config.web.v1
 
+import org.inpertio.server.config.model.KeyValueConfigs
+import org.inpertio.server.config.model.KeyValueDiff
+import org.inpertio.server.config.model.SerializedConfigs
+import org.inpertio.server.config.service.ConfigFormat
 import org.inpertio.server.config.service.ConfigService
+import org.inpertio.server.config.service.impl.BinaryFormat
+import org.inpertio.server.config.service.impl.JsonFormat
 import org.inpertio.server.config.service.impl.KeyValueFormat
 import org.inpertio.server.util.WebUtil
+import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpStatus
-import org.springframework.http.ResponseEntity
+import org.springframework.http.InvalidMediaTypeException
+import org.springframework.http.MediaType
 import org.springframework.web.bind.annotation.PathVariable
 import org.springframework.web.bind.annotation.RequestMapping
+import org.springframework.web.bind.annotation.RequestParam
 import org.springframework.web.bind.annotation.RestController
 import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
 
 @RestController
 class ConfigControllerV1(
     private val service: ConfigService,
-    private val format: KeyValueFormat
+    private val keyValueFormat: KeyValueFormat,
+    private val jsonFormat: JsonFormat,
+    private val binaryFormat: BinaryFormat
 ) {
 
+    /**
+     * Key/value configs might be large, so, they are streamed directly to the response instead of building
+     * intermediate response string.
+     *
+     * Configs format is negotiated via the `Accept` header: `text/plain` key/value lines (default),
+     * `application/json` map or [BinaryFormat] are supported.
+     *
+     * Responses are tagged by the branch commit hash, requested paths and format, so, a client which already has
+     * the configs for the current branch snapshot gets `304 Not Modified` without configs being prepared.
+     *
+     * Clients which accept gzip encoding get compressed configs. They are compressed only once per cached
+     * result, and compressed variant has its own entity tag.
+     */
     @RequestMapping("/api/keyValue/v1/{branch}/**")
-    fun getKeyValue(@PathVariable branch: String, request: HttpServletRequest): ResponseEntity<String> {
-        val paths = WebUtil.getTrailingPath(request).split(",").filter(String::isNotBlank)
+    fun getKeyValue(@PathVariable branch: String, request: HttpServletRequest, response: HttpServletResponse) {
+        response.setHeader(HttpHeaders.VARY, "${HttpHeaders.ACCEPT}, ${HttpHeaders.ACCEPT_ENCODING}")
+        when (negotiateMediaType(request)) {
+            MediaType.TEXT_PLAIN -> getConfigs(branch, keyValueFormat, request, response)
+            MediaType.APPLICATION_JSON -> getConfigs(branch, jsonFormat, request, response)
+            BINARY_MEDIA_TYPE -> getConfigs(branch, binaryFormat, request, response)
+            else -> {
+                val body = "supported media types: $SUPPORTED_MEDIA_TYPES".toByteArray()
+                response.status = HttpStatus.NOT_ACCEPTABLE.value()
+                response.contentType = KeyValueConfigs.CONTENT_TYPE
+                response.setContentLength(body.size)
+                response.outputStream.write(body)
+            }
+        }
+    }
+
+    /**
+     * @return  the most preferred media type among [SUPPORTED_MEDIA_TYPES] which is accepted by the given request;
+     *          `null` if none of them is accepted
+     */
+    private fun negotiateMediaType(request: HttpServletRequest): MediaType? {
+        val accept = request.getHeader(HttpHeaders.ACCEPT)
+        if (accept.isNullOrBlank()) {
+            return MediaType.TEXT_PLAIN
+        }
+        val acceptedMediaTypes = try {
+            MediaType.parseMediaTypes(accept)
+        } catch (e: InvalidMediaTypeException) {
+            // malformed header is ignored, the default format is used then
+            return MediaType.TEXT_PLAIN
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedMediaTypes)
+        for (accepted in acceptedMediaTypes) {
+            if (accepted.qualityValue <= 0.0) {
+                continue
+            }
+            SUPPORTED_MEDIA_TYPES.firstOrNull { accepted.includes(it) }?.let {
+                return it
+            }
+        }
+        return null
+    }
+
+    private fun <T : SerializedConfigs> getConfigs(
+        branch: String,
+        format: ConfigFormat<T>,
+        request: HttpServletRequest,
+        response: HttpServletResponse
+    ) {
+        val rawPaths = WebUtil.getTrailingPath(request)
+        val paths = rawPaths.split(",").filter(String::isNotBlank)
+        val gzipAccepted = WebUtil.acceptsGzip(request)
+        service.getCurrentHash(branch)?.let { hash ->
+            val eTag = WebUtil.getETag(hash, rawPaths, format.toString())
+            val gzipETag = WebUtil.getGzipETag(eTag)
+            val matchedETag = when {
+                WebUtil.isNotModified(request, eTag) -> eTag
+                gzipAccepted && WebUtil.isNotModified(request, gzipETag) -> gzipETag
+                else -> null
+            }
+            if (matchedETag != null) {
+                service.onNotModified(branch, paths, format)
+                response.status = HttpStatus.NOT_MODIFIED.value()
+                response.setHeader(HttpHeaders.ETAG, matchedETag)
+                return
+            }
+        }
+
         val result = service.getConfigs(branch, paths, format)
-        return if (result.success) {
-            ResponseEntity.ok(result.successValue.entries.joinToString(separator = "\n") { "${it.key}=${it.value}" })
+        if (result.success) {
+            val configs = result.successValue.configs
+            val eTag = WebUtil.getETag(result.successValue.hash, rawPaths, format.toString())
+            response.contentType = configs.contentType
+            response.setHeader(WebUtil.COMMIT_HASH_HEADER, result.successValue.hash)
+            val gzipContent = if (gzipAccepted) configs.gzipContent else null
+            if (gzipContent == null) {
+                response.setHeader(HttpHeaders.ETAG, eTag)
+                response.setContentLengthLong(configs.contentLength)
+                configs.writeTo(response.outputStream)
+            } else {
+                response.setHeader(HttpHeaders.ETAG, WebUtil.getGzipETag(eTag))
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, WebUtil.GZIP_ENCODING)
+                response.setContentLength(gzipContent.size)
+                response.outputStream.write(gzipContent)
+            }
+        } else {
+            writeFailure(result.failureValue, response)
+        }
+    }
+
+    /**
+     * Returns only keys which are added, changed or removed since the given commit, see [KeyValueDiff]
+     * for the response format. Commit hash of the current branch snapshot is returned in
+     * the [WebUtil.COMMIT_HASH_HEADER] response header, it's expected to be used as `since` in the next request.
+     */
+    @RequestMapping("/api/keyValueDiff/v1/{branch}/**")
+    fun getKeyValueDiff(
+        @PathVariable branch: String,
+        @RequestParam since: String,
+        request: HttpServletRequest,
+        response: HttpServletResponse
+    ) {
+        val paths = WebUtil.getTrailingPath(request).split(",").filter(String::isNotBlank)
+        val result = service.getConfigsDiff(branch, since, paths, keyValueFormat)
+        response.contentType = KeyValueConfigs.CONTENT_TYPE
+        if (result.success) {
+            response.setHeader(WebUtil.COMMIT_HASH_HEADER, result.successValue.hash)
+            result.successValue.configs.writeTo(response.outputStream)
         } else {
-            ResponseEntity(result.failureValue, HttpStatus.BAD_REQUEST)
+            writeFailure(result.failureValue, response)
         }
     }
-}
\ No newline at end of file
+
+    private fun writeFailure(failure: String, response: HttpServletResponse) {
+        val body = failure.toByteArray()
+        response.status = HttpStatus.BAD_REQUEST.value()
+        response.contentType = KeyValueConfigs.CONTENT_TYPE
+        response.setContentLength(body.size)
+        response.outputStream.write(body)
+    }
+
+    companion object {
+        private val BINARY_MEDIA_TYPE = MediaType.valueOf(BinaryFormat.CONTENT_TYPE)
+        private val SUPPORTED_MEDIA_TYPES = listOf(MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON, BINARY_MEDIA_TYPE)
+    }
+}
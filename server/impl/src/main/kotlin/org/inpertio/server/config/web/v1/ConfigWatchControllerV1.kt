@@ -0,0 +1,60 @@
+package org.inpertio.server.config.web.v1
+
+import org.inpertio.server.config.service.ConfigWatchService
+import org.inpertio.server.util.WebUtil
+import org.springframework.http.HttpStatus
+import org.springframework.http.ResponseEntity
+import org.springframework.web.bind.annotation.PathVariable
+import org.springframework.web.bind.annotation.RequestMapping
+import org.springframework.web.bind.annotation.RequestParam
+import org.springframework.web.bind.annotation.RestController
+import org.springframework.web.context.request.async.DeferredResult
+import javax.servlet.http.HttpServletRequest
+
+/**
+ * Long polling API which allows clients to get notified about config changes as soon as they are picked up
+ * instead of polling configs on fixed intervals. Waiting requests are processed asynchronously, so, they
+ * don't hold servlet threads.
+ */
+@RestController
+class ConfigWatchControllerV1(
+    private val service: ConfigWatchService
+) {
+
+    /**
+     * Responds as soon as config files under the target paths differ from the ones in the `since` commit. The
+     * response body and [WebUtil.COMMIT_HASH_HEADER] hold the commit hash of the branch snapshot with changes.
+     * `304 Not Modified` is returned if there are no changes during the given timeout.
+     */
+    @RequestMapping("/api/keyValueWatch/v1/{branch}/**")
+    fun watchKeyValue(
+        @PathVariable branch: String,
+        @RequestParam since: String,
+        @RequestParam(required = false) timeoutMs: Long?,
+        request: HttpServletRequest
+    ): DeferredResult<ResponseEntity<String>> {
+        val paths = WebUtil.getTrailingPath(request).split(",").filter(String::isNotBlank)
+        val timeout = (timeoutMs ?: DEFAULT_TIMEOUT_MS).coerceIn(1L, MAX_TIMEOUT_MS)
+        val result = DeferredResult<ResponseEntity<String>>(
+                timeout,
+                ResponseEntity.status(HttpStatus.NOT_MODIFIED).header(WebUtil.COMMIT_HASH_HEADER, since).build<String>()
+        )
+        val watchResult = service.watch(branch, paths, since) { hash ->
+            result.setResult(ResponseEntity.ok().header(WebUtil.COMMIT_HASH_HEADER, hash).body(hash))
+        }
+        if (watchResult.success) {
+            val watch = watchResult.successValue
+            result.onCompletion {
+                watch.cancel()
+            }
+        } else {
+            result.setResult(ResponseEntity(watchResult.failureValue, HttpStatus.BAD_REQUEST))
+        }
+        return result
+    }
+
+    companion object {
+        private const val DEFAULT_TIMEOUT_MS = 30_000L
+        private const val MAX_TIMEOUT_MS = 300_000L
+    }
+}
@@ -1,5 +1,7 @@
 package org.inpertio.server.di
 
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.InjectionPoint
@@ -17,6 +19,14 @@ open class DiConfiguration {
         return LoggerFactory.getLogger(getHolderClass(injectionPoint))
     }
 
+    /**
+     * Service meters are kept in memory, no monitoring endpoints are exposed for them
+     */
+    @Bean
+    open fun meterRegistry(): MeterRegistry {
+        return SimpleMeterRegistry()
+    }
+
     private fun getHolderClass(injectionPoint: InjectionPoint): Class<*> {
         return injectionPoint.methodParameter?.containingClass
                ?: injectionPoint.field?.declaringClass
@@ -0,0 +1,14 @@
+package org.inpertio.server.git.config
+
+import tech.harmonysoft.oss.inpertio.client.ConfigProvider
+
+interface EvictionParametersConfigProvider : ConfigProvider<EvictionParameters>
+
+/**
+ * @param branchIdleTtlMs   a branch which is not requested during this time is not updated anymore and its
+ *                          local data is removed; non-positive value means that idle branches are kept forever
+ * @param diskBudgetBytes   max disk space occupied by branch snapshots in [StorageMode.FILE_SYSTEM] mode,
+ *                          least recently used branches are evicted when it's exceeded; non-positive value
+ *                          means that there is no limit
+ */
+data class EvictionParameters(val branchIdleTtlMs: Long, val diskBudgetBytes: Long)
@@ -5,4 +5,17 @@ import java.io.File
 
 interface LocalGitParametersConfigProvider : ConfigProvider<LocalGitParameters>
 
-data class LocalGitParameters(val rootDir: File)
\ No newline at end of file
+data class LocalGitParameters(val rootDir: File, val storageMode: StorageMode = StorageMode.FILE_SYSTEM)
+
+enum class StorageMode {
+
+    /**
+     * Every branch snapshot is stored as a regular directory in local file system
+     */
+    FILE_SYSTEM,
+
+    /**
+     * Branch content is read directly from local git object database, no working tree is kept for it
+     */
+    OBJECT_DATABASE
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package org.inpertio.server.git.config
+
+import tech.harmonysoft.oss.inpertio.client.ConfigProvider
+
+interface RefreshParametersConfigProvider : ConfigProvider<RefreshParameters>
+
+/**
+ * @param periodMs          how often background refresher checks remote repo for changes
+ * @param branchIntervalMs  minimum time between two consecutive updates of the same branch
+ * @param jitterMs          max random delay added to [branchIntervalMs], spreads branch updates over time
+ * @param awaitTimeoutMs    max time a request for a branch which has no snapshot yet waits for it to be prepared
+ * @param absentBranchTtlMs how long a branch which is not found in remote repo is reported as absent without
+ *                          checking remote repo again
+ * @param workersCount      max number of branches which are updated in parallel
+ * @param branchTimeoutMs   max time a single branch update takes since a git worker picks it up (as well as
+ *                          timeout for a single fetch), an update which is not finished by then is cancelled
+ */
+data class RefreshParameters(
+    val periodMs: Long,
+    val branchIntervalMs: Long,
+    val jitterMs: Long,
+    val awaitTimeoutMs: Long,
+    val absentBranchTtlMs: Long,
+    val workersCount: Int,
+    val branchTimeoutMs: Long
+)
@@ -0,0 +1,31 @@
+package org.inpertio.server.git.config.impl
+
+import org.inpertio.server.git.config.EvictionParameters
+import org.inpertio.server.git.config.EvictionParametersConfigProvider
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+
+@Component
+class EvictionParametersConfigProviderImpl(
+    @Value("\${${Parameter.BRANCH_IDLE_TTL}:86400000}") branchIdleTtlMs: Long,
+    @Value("\${${Parameter.DISK_BUDGET}:0}") diskBudgetBytes: Long
+) : EvictionParametersConfigProvider {
+
+    private val parameters = EvictionParameters(branchIdleTtlMs, diskBudgetBytes)
+
+    override fun getData(): EvictionParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): EvictionParameters {
+        return data
+    }
+
+    private object Parameter {
+        const val BRANCH_IDLE_TTL = "eviction.branch.idle.ttl.ms"
+        const val DISK_BUDGET = "eviction.disk.budget.bytes"
+    }
+}
@@ -2,6 +2,7 @@ package org.inpertio.server.git.config.impl
 
 import org.inpertio.server.git.config.LocalGitParameters
 import org.inpertio.server.git.config.LocalGitParametersConfigProvider
+import org.inpertio.server.git.config.StorageMode
 import org.slf4j.Logger
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Component
@@ -11,6 +12,7 @@ import java.nio.file.Files
 @Component
 class LocalGitParametersConfigProviderImpl(
     @Value("\${${Parameter.LOCAL_ROOT}:}") rootPath: String,
+    @Value("\${${Parameter.STORAGE_MODE}:FILE_SYSTEM}") storageMode: StorageMode,
     logger: Logger
 ) : LocalGitParametersConfigProvider {
 
@@ -21,11 +23,12 @@ class LocalGitParametersConfigProviderImpl(
             val dir = Files.createTempDirectory("").toFile()
             logger.info("No root local dir path is defined explicitly via '{}' property, using auto-generated "
                         + "directory at {}", Parameter.LOCAL_ROOT, dir.absolutePath)
-            LocalGitParameters(dir)
+            LocalGitParameters(dir, storageMode)
         } else {
             logger.info("Using pre-configured root local dir {}", rootPath)
-            LocalGitParameters(File(rootPath))
+            LocalGitParameters(File(rootPath), storageMode)
         }
+        logger.info("Using {} storage mode", storageMode)
     }
 
     override fun getData(): LocalGitParameters {
@@ -41,6 +44,7 @@ class LocalGitParametersConfigProviderImpl(
 
     private object Parameter {
         const val LOCAL_ROOT = "local.data.root.path"
+        const val STORAGE_MODE = "local.data.storage.mode"
     }
 
 }
\ No newline at end of file
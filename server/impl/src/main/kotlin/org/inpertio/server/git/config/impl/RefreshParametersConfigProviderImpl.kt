@@ -0,0 +1,69 @@
+package org.inpertio.server.git.config.impl
+
+import org.inpertio.server.git.config.RefreshParameters
+import org.inpertio.server.git.config.RefreshParametersConfigProvider
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+
+@Component
+class RefreshParametersConfigProviderImpl(
+    @Value("\${${Parameter.PERIOD}:5000}") periodMs: Long,
+    @Value("\${${Parameter.BRANCH_INTERVAL}:60000}") branchIntervalMs: Long,
+    @Value("\${${Parameter.JITTER}:10000}") jitterMs: Long,
+    @Value("\${${Parameter.AWAIT_TIMEOUT}:30000}") awaitTimeoutMs: Long,
+    @Value("\${${Parameter.ABSENT_BRANCH_TTL}:30000}") absentBranchTtlMs: Long,
+    @Value("\${${Parameter.WORKERS_COUNT}:4}") workersCount: Int,
+    @Value("\${${Parameter.BRANCH_TIMEOUT}:60000}") branchTimeoutMs: Long
+) : RefreshParametersConfigProvider {
+
+    private val parameters: RefreshParameters
+
+    init {
+        if (periodMs <= 0) {
+            throw IllegalStateException("Expected '${Parameter.PERIOD}' to be positive but got $periodMs")
+        }
+        if (branchIntervalMs < 0 || jitterMs < 0 || awaitTimeoutMs < 0 || absentBranchTtlMs < 0) {
+            throw IllegalStateException(
+                    "Expected '${Parameter.BRANCH_INTERVAL}', '${Parameter.JITTER}', '${Parameter.AWAIT_TIMEOUT}' "
+                    + "and '${Parameter.ABSENT_BRANCH_TTL}' to be non-negative but got $branchIntervalMs, "
+                    + "$jitterMs, $awaitTimeoutMs and $absentBranchTtlMs"
+            )
+        }
+        if (workersCount <= 0 || branchTimeoutMs <= 0) {
+            throw IllegalStateException(
+                    "Expected '${Parameter.WORKERS_COUNT}' and '${Parameter.BRANCH_TIMEOUT}' to be positive but got "
+                    + "$workersCount and $branchTimeoutMs"
+            )
+        }
+        parameters = RefreshParameters(
+                periodMs = periodMs,
+                branchIntervalMs = branchIntervalMs,
+                jitterMs = jitterMs,
+                awaitTimeoutMs = awaitTimeoutMs,
+                absentBranchTtlMs = absentBranchTtlMs,
+                workersCount = workersCount,
+                branchTimeoutMs = branchTimeoutMs
+        )
+    }
+
+    override fun getData(): RefreshParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): RefreshParameters {
+        return data
+    }
+
+    private object Parameter {
+        const val PERIOD = "refresh.period.ms"
+        const val BRANCH_INTERVAL = "refresh.branch.interval.ms"
+        const val JITTER = "refresh.jitter.ms"
+        const val AWAIT_TIMEOUT = "refresh.await.timeout.ms"
+        const val ABSENT_BRANCH_TTL = "refresh.absent.branch.ttl.ms"
+        const val WORKERS_COUNT = "refresh.workers.count"
+        const val BRANCH_TIMEOUT = "refresh.branch.timeout.ms"
+    }
+}
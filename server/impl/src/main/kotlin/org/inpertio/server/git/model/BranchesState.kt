@@ -0,0 +1,12 @@
+package org.inpertio.server.git.model
+
+/**
+ * Branches state which survives service restart
+ */
+data class BranchesState(val targetBranches: Set<String>, val snapshots: List<BranchSnapshotState>)
+
+/**
+ * @param rootPath  path to the directory which holds snapshot content; `null` if the content is not stored
+ *                  in a dedicated directory
+ */
+data class BranchSnapshotState(val branch: String, val hash: String, val rootPath: String?)
@@ -0,0 +1,51 @@
+package org.inpertio.server.git.service
+
+import java.io.File
+import java.io.InputStream
+
+/**
+ * Read-only view of a branch content for the particular commit. All paths are relative to the repo root
+ * and use `/` as a separator.
+ */
+interface BranchContent {
+
+    /**
+     * @return  `true` if given path points to a file or a directory in the current branch content
+     */
+    fun exists(path: String): Boolean
+
+    /**
+     * @return  a file located at the given path; `null` if there is no such file
+     */
+    fun getFile(path: String): ContentFile?
+
+    /**
+     * @return  given path's file if the path points to a file; all files located under the target directory
+     *          recursively if the path points to a directory; an empty list if there is nothing at the given path
+     */
+    fun listFiles(path: String): List<ContentFile>
+}
+
+interface ContentFile {
+
+    /**
+     * File path relative to the repo root
+     */
+    val path: String
+
+    /**
+     * Git blob id of the file content
+     */
+    val blobId: String
+
+    val size: Long
+
+    /**
+     * Local file which holds this file's content if any. It allows transferring the content without copying it
+     * to the heap, but is available only when branch content is stored in the local file system
+     */
+    val localFile: File?
+        get() = null
+
+    fun openStream(): InputStream
+}
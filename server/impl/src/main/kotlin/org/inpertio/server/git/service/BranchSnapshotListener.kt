@@ -0,0 +1,24 @@
+package org.inpertio.server.git.service
+
+/**
+ * Callback for branch snapshots lifecycle events. All beans which implement this interface are notified
+ * by [GitService] automatically.
+ */
+interface BranchSnapshotListener {
+
+    /**
+     * Is called when new content of the given branch is prepared but before it's exposed to the
+     * [GitService.withBranch] callers. Is called from a background thread, the new snapshot is published only
+     * after this method returns.
+     */
+    fun onSnapshotPrepared(branch: String, hash: String, content: BranchContent) {
+    }
+
+    /**
+     * Is called from a background thread right after new content of the given branch is exposed to the
+     * [GitService.withBranch] callers. Given content might be retired concurrently, so, only its paths and
+     * blob ids are safe to use here.
+     */
+    fun onSnapshotPublished(branch: String, hash: String, content: BranchContent) {
+    }
+}
@@ -1,18 +1,34 @@
 package org.inpertio.server.git.service
 
-import java.io.File
-
 interface GitService {
 
     /**
-     * Executes given action against the target git branch's file system root.
+     * Executes given action against the target git branch's content.
      *
      * @return  given action's call result if target branch is found; `null` if no branch is found
      */
     fun <T> withBranch(branch: String, action: Action<T>): T?
 
+    /**
+     * Allows checking whether target branch has changed without accessing its content
+     *
+     * @return  commit hash of the target branch's snapshot which is currently exposed; `null` if the branch
+     *          has no snapshot yet
+     */
+    fun getCurrentHash(branch: String): String?
+
+    /**
+     * Executes given action against the content of the given commit. The commit is expected to be available
+     * in local repo and to be reachable from the target branch's current snapshot commit, e.g. it's one of
+     * the commits the branch pointed to before.
+     *
+     * @return  given action's call result if target commit is found; `null` if there is no such commit,
+     *          it doesn't belong to the target branch or the branch has no snapshot yet
+     */
+    fun <T> withCommit(branch: String, hash: String, action: Action<T>): T?
+
     fun interface Action<T> {
 
-        fun doInBranch(hash: String, rootDir: File): T
+        fun doInBranch(hash: String, content: BranchContent): T
     }
-}
\ No newline at end of file
+}
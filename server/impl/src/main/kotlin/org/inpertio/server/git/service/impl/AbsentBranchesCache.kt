@@ -0,0 +1,68 @@
+package org.inpertio.server.git.service.impl
+
+import org.inpertio.server.git.config.RefreshParameters
+import org.inpertio.server.git.config.RefreshParametersConfigProvider
+import org.springframework.stereotype.Component
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A request for a branch which doesn't exist in remote repo triggers a repo update. We don't want to do that
+ * on every such request, e.g. when a misbehaving client polls for a misspelled branch, so, this class remembers
+ * absent branches for [RefreshParameters.absentBranchTtlMs].
+ */
+@Component
+class AbsentBranchesCache(
+    private val refreshParametersConfigProvider: RefreshParametersConfigProvider
+) {
+
+    private val expirationTimesMs = ConcurrentHashMap<String/* branch name */, Long>()
+
+    fun isAbsent(branch: String): Boolean {
+        val expirationTimeMs = expirationTimesMs[branch] ?: return false
+        if (System.currentTimeMillis() < expirationTimeMs) {
+            return true
+        }
+        expirationTimesMs.remove(branch, expirationTimeMs)
+        return false
+    }
+
+    fun onAbsentBranch(branch: String) {
+        val ttlMs = refreshParametersConfigProvider.data.absentBranchTtlMs
+        if (ttlMs <= 0) {
+            return
+        }
+        val now = System.currentTimeMillis()
+        if (expirationTimesMs.size >= MAX_SIZE) {
+            expirationTimesMs.values.removeAll { it <= now }
+            if (expirationTimesMs.size >= MAX_SIZE) {
+                return
+            }
+        }
+        expirationTimesMs[branch] = now + ttlMs
+    }
+
+    /**
+     * @return  `true` if there are branches which are reported as absent at the moment
+     */
+    fun hasAbsentBranches(): Boolean {
+        if (expirationTimesMs.isEmpty()) {
+            return false
+        }
+        val now = System.currentTimeMillis()
+        expirationTimesMs.values.removeAll { it <= now }
+        return expirationTimesMs.isNotEmpty()
+    }
+
+    /**
+     * Is expected to be called with all branches available in remote repo, they are not reported as absent anymore
+     */
+    fun onRemoteBranches(branches: Collection<String>) {
+        if (expirationTimesMs.isNotEmpty()) {
+            expirationTimesMs.keys.removeAll(branches)
+        }
+    }
+
+    companion object {
+        private const val MAX_SIZE = 10_000
+    }
+}
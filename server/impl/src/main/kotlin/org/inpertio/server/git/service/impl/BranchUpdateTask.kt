@@ -0,0 +1,53 @@
+package org.inpertio.server.git.service.impl
+
+import org.inpertio.server.git.model.BranchUpdateResult
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.FutureTask
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Branch update which is executed by a git worker. It knows when a worker picks it up, so, update timeout
+ * doesn't include the time spent in the workers queue.
+ *
+ * Given `onRelease` callback is called exactly once when the task is over - after the update action is done
+ * or when the task is cancelled before the action is started (it's never started then).
+ */
+class BranchUpdateTask(
+    action: () -> BranchUpdateResult,
+    private val onRelease: () -> Unit
+) : FutureTask<BranchUpdateResult>(Callable { action() }) {
+
+    private val claimed = AtomicBoolean()
+    private val startLatch = CountDownLatch(1)
+    @Volatile var startTimeMs = 0L
+        private set
+
+    override fun run() {
+        if (!claimed.compareAndSet(false, true)) {
+            // the task is cancelled before start
+            return
+        }
+        startTimeMs = System.currentTimeMillis()
+        startLatch.countDown()
+        try {
+            super.run()
+        } finally {
+            onRelease()
+        }
+    }
+
+    override fun done() {
+        if (claimed.compareAndSet(false, true)) {
+            onRelease()
+        }
+    }
+
+    /**
+     * @return  `true` if a worker picked up this task in the given time; `false` otherwise
+     */
+    fun awaitStart(timeoutMs: Long): Boolean {
+        return startLatch.await(timeoutMs, TimeUnit.MILLISECONDS)
+    }
+}
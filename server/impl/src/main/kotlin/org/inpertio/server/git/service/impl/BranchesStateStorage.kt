@@ -0,0 +1,65 @@
+package org.inpertio.server.git.service.impl
+
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import org.inpertio.server.git.config.LocalGitParametersConfigProvider
+import org.inpertio.server.git.model.BranchesState
+import org.inpertio.server.util.FileUtil
+import org.slf4j.Logger
+import org.springframework.stereotype.Component
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Keeps [BranchesState] in a small manifest file in local data root dir, that way branch snapshots prepared
+ * before restart can be served right after the service start.
+ */
+@Component
+class BranchesStateStorage(
+    private val localGitParametersConfigProvider: LocalGitParametersConfigProvider,
+    private val logger: Logger
+) {
+
+    private val mapper = jacksonObjectMapper()
+
+    @Volatile private var lastStoredState: BranchesState? = null
+
+    private val stateFile: File
+        get() = File(localGitParametersConfigProvider.data.rootDir, "state.json")
+
+    fun load(): BranchesState? {
+        val file = stateFile
+        if (!file.isFile) {
+            logger.info("No stored branches state is found at {}", file.absolutePath)
+            return null
+        }
+        return try {
+            mapper.readValue(file, BranchesState::class.java).apply {
+                lastStoredState = this
+                logger.info("Loaded stored state for {} target branches and {} snapshots from {}",
+                            targetBranches.size, snapshots.size, file.absolutePath)
+            }
+        } catch (e: Throwable) {
+            logger.warn("Failed to load stored branches state from {}", file.absolutePath, e)
+            null
+        }
+    }
+
+    fun store(state: BranchesState) {
+        val file = stateFile
+        if (state == lastStoredState && file.isFile) {
+            return
+        }
+        try {
+            FileUtil.ensureDirectoryExists(file.parentFile)
+            val tmpFile = File(file.parentFile, "${file.name}.tmp")
+            mapper.writeValue(tmpFile, state)
+            Files.move(tmpFile.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            lastStoredState = state
+            logger.debug("Stored branches state in {}", file.absolutePath)
+        } catch (e: Throwable) {
+            logger.warn("Failed to store branches state in {}", file.absolutePath, e)
+        }
+    }
+}
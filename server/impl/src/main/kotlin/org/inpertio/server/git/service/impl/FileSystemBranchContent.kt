@@ -0,0 +1,66 @@
+package org.inpertio.server.git.service.impl
+
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.ContentFile
+import org.inpertio.server.util.FileUtil
+import java.io.File
+import java.io.InputStream
+
+/**
+ * [BranchContent] backed by a branch snapshot stored in local file system
+ *
+ * @param index     index of all snapshot files, their paths are relative to [rootDir]
+ */
+class FileSystemBranchContent(val rootDir: File, val index: SnapshotIndex) : BranchContent {
+
+    /**
+     * Disk space occupied by the snapshot files
+     */
+    val sizeBytes: Long
+        get() = index.sizeBytes
+
+    override fun exists(path: String): Boolean {
+        val normalizedPath = FileUtil.normalizeRelativePath(path) ?: return false
+        return index.getFile(normalizedPath) != null || index.isDirectory(normalizedPath)
+    }
+
+    override fun getFile(path: String): ContentFile? {
+        val normalizedPath = FileUtil.normalizeRelativePath(path) ?: return null
+        return index.getFile(normalizedPath)?.let { LocalContentFile(it, File(rootDir, it.path)) }
+    }
+
+    override fun listFiles(path: String): List<ContentFile> {
+        val normalizedPath = FileUtil.normalizeRelativePath(path) ?: return emptyList()
+        index.getFile(normalizedPath)?.let {
+            return listOf(LocalContentFile(it, File(rootDir, it.path)))
+        }
+        return index.listFiles(normalizedPath).map { LocalContentFile(it, File(rootDir, it.path)) }
+    }
+
+    override fun toString(): String {
+        return rootDir.absolutePath
+    }
+
+    private class LocalContentFile(private val entry: SnapshotIndex.Entry, private val file: File) : ContentFile {
+
+        override val path: String
+            get() = entry.path
+
+        override val blobId: String
+            get() = entry.blobId.name
+
+        override val size: Long
+            get() = entry.size
+
+        override val localFile: File
+            get() = file
+
+        override fun openStream(): InputStream {
+            return file.inputStream()
+        }
+
+        override fun toString(): String {
+            return file.absolutePath
+        }
+    }
+}
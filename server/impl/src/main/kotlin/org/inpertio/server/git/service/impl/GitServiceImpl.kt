@@ -1,11 +1,35 @@
 package org.inpertio.server.git.service.impl
 
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
 import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.AnyObjectId
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.FileMode
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.Repository
+import org.eclipse.jgit.revwalk.RevCommit
+import org.eclipse.jgit.revwalk.RevWalk
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder
+import org.eclipse.jgit.transport.RefSpec
+import org.eclipse.jgit.treewalk.TreeWalk
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.BranchSnapshotListener
 import org.inpertio.server.git.service.GitService
+import org.inpertio.server.git.config.EvictionParameters
+import org.inpertio.server.git.config.EvictionParametersConfigProvider
 import org.inpertio.server.git.config.LocalGitParametersConfigProvider
+import org.inpertio.server.git.config.RefreshParameters
+import org.inpertio.server.git.config.RefreshParametersConfigProvider
 import org.inpertio.server.git.config.RemoteGitParameters
 import org.inpertio.server.git.config.RemoteGitParametersConfigProvider
+import org.inpertio.server.git.config.StorageMode
+import org.inpertio.server.git.model.BranchSnapshotState
 import org.inpertio.server.git.model.BranchUpdateResult
+import org.inpertio.server.git.model.BranchesState
 import org.inpertio.server.git.model.GitBranch
 import org.inpertio.server.git.model.RepoUpdateResult
 import org.inpertio.server.git.model.RepoUpdateResult.BranchesUpdateResults
@@ -15,60 +39,516 @@ import org.inpertio.server.util.ProcessingResult
 import org.slf4j.Logger
 import org.springframework.stereotype.Component
 import java.io.File
-import java.io.IOException
+import java.nio.file.Files
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.locks.ReentrantReadWriteLock
-import kotlin.concurrent.withLock
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
 
 @Component
 class GitServiceImpl(
     private val targetBranchesManager: TargetBranchesManager,
+    private val absentBranchesCache: AbsentBranchesCache,
+    private val branchesStateStorage: BranchesStateStorage,
     private val localGitParametersConfigProvider: LocalGitParametersConfigProvider,
     private val remoteGitParametersConfigProvider: RemoteGitParametersConfigProvider,
+    private val refreshParametersConfigProvider: RefreshParametersConfigProvider,
+    private val evictionParametersConfigProvider: EvictionParametersConfigProvider,
+    private val snapshotListeners: List<BranchSnapshotListener>,
+    meterRegistry: MeterRegistry,
     private val logger: Logger
 ) : GitService {
 
     // We use the following design here:
-    //   *) <local-data-root>/repo - local dir which is used for retrieving changes from remote git repo
-    //   *) <local-data-root>/repo/<branch-name> - a directory per-branch, used for retrieving target branch
-    //                                             changes from remote repo
+    //   *) <local-data-root>/repo.git - a bare local git repo, all target branches are fetched into it
     //   *) <local-data-root>/content - root dir which holds the data for serving actual config requests
+    //                                  in FILE_SYSTEM storage mode
     //   *) <local-data-root>/content/<branch-name> - a directory per-branch, its sub-directories contain
-    //                                                target branch content snapshots
+    //                                                target branch content snapshots. Branch names might
+    //                                                contain slashes, e.g. 'feature/x', they are nested dirs then
     //   *) <local-data-root>/content/<branch-name>/<hash> - holds remote Git repo content for the target commit
+    //
+    // OBJECT_DATABASE storage mode doesn't use the 'content' dir, branch content is read directly from
+    // the local repo's object database
+
+    // All git operations are driven by a single background thread, so, client requests never wait for
+    // remote repo interaction unless they target a branch which has no snapshot yet. Concurrent requests for
+    // such branches are coalesced - all of them wait for the same out of schedule update.
+    //
+    // Target branches are updated in parallel by a bounded pool of git workers.
+    //
+    // Readers pin current branch snapshot without any locking. When new snapshot is published, the previous one
+    // is retired and its content is removed in background as soon as the last reader releases it.
+    //
+    // Branches which are not requested for a long time and least recently used branches which don't fit into
+    // the disk budget are evicted - they are not updated anymore and their snapshots are retired. Such branches
+    // are prepared again on the next request
 
     private val branchRegistry = ConcurrentHashMap<String/* branch name */, BranchRecord>()
+    private val nextBranchUpdateTimeMs = ConcurrentHashMap<String/* branch name */, Long>()
+    @Volatile private var localRepo: Repository? = null
+    private val refreshExecutor = Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "inpertio-git-refresh").apply {
+            isDaemon = true
+        }
+    }
+
+    private val gitWorkersCounter = AtomicInteger()
+    private val gitWorkers = Executors.newFixedThreadPool(refreshParametersConfigProvider.data.workersCount) {
+        Thread(it, "inpertio-git-worker-${gitWorkersCounter.incrementAndGet()}").apply {
+            isDaemon = true
+        }
+    }
+    private val inProgressBranchUpdates: MutableSet<String> = ConcurrentHashMap.newKeySet()
+    private val retiredRootDirs: MutableSet<File> = ConcurrentHashMap.newKeySet()
+    private val reclaimExecutor = Executors.newSingleThreadExecutor {
+        Thread(it, "inpertio-snapshot-reclaimer").apply {
+            isDaemon = true
+        }
+    }
+
+    /**
+     * Indexes of recently used commits, e.g. the ones clients request changes since
+     */
+    private val commitIndexes: Cache<String/* commit hash */, SnapshotIndex> = Caffeine.newBuilder()
+        .maximumSize(COMMIT_INDEXES_CACHE_SIZE)
+        .build()
+    private val reachableCommits: Cache<String/* <branch hash>:<commit hash> */, Boolean> = Caffeine.newBuilder()
+        .maximumSize(REACHABLE_COMMITS_CACHE_SIZE)
+        .build()
+
+    private val pendingBranchUpdates = ConcurrentHashMap<String/* branch name */, CompletableFuture<Unit>>()
+    private val pendingRepoUpdate = AtomicReference<CompletableFuture<Unit>?>()
+    private val branchesToForceUpdate: MutableSet<String> = ConcurrentHashMap.newKeySet()
+    private val branchCoalescedCounter = Counter.builder(COALESCED_COUNTER)
+        .tag("scope", "branch")
+        .description("Number of requests which joined an in-flight update of the same branch")
+        .register(meterRegistry)
+    private val repoCoalescedCounter = Counter.builder(COALESCED_COUNTER)
+        .tag("scope", "repo")
+        .description("Number of branch update requests which joined an already scheduled repo update")
+        .register(meterRegistry)
+    private val skippedBranchesCounter = Counter.builder(BRANCH_CHECK_COUNTER)
+        .tag("result", "skipped")
+        .description("Number of due branch checks which found that remote branch is not changed")
+        .register(meterRegistry)
+    private val updatedBranchesCounter = Counter.builder(BRANCH_CHECK_COUNTER)
+        .tag("result", "updated")
+        .description("Number of due branch checks which found that remote branch is changed")
+        .register(meterRegistry)
+    private val absentBranchHitsCounter = Counter.builder(ABSENT_BRANCH_HITS_COUNTER)
+        .description("Number of requests for branches which are known to be absent in remote repo")
+        .register(meterRegistry)
+    @Volatile private var lastSkippedBranchesRatio = 0.0
+
+    init {
+        Gauge.builder(SKIPPED_BRANCHES_RATIO_GAUGE, this) { it.lastSkippedBranchesRatio }
+            .description("Ratio of due branches which were not changed during the last check")
+            .register(meterRegistry)
+    }
+
+    @PostConstruct
+    fun startRefresh() {
+        restoreState()
+        val periodMs = refreshParametersConfigProvider.data.periodMs
+        refreshExecutor.scheduleWithFixedDelay({ refreshSafely() }, 0, periodMs, TimeUnit.MILLISECONDS)
+        logger.info("Scheduled background git refresh every {} ms", periodMs)
+    }
+
+    /**
+     * Restores target branches and their snapshots prepared before restart, so, they are served right away.
+     * Restored snapshots are verified against remote repo by the first background refresh.
+     */
+    private fun restoreState() {
+        val state = branchesStateStorage.load()
+        val restoredRootDirs = mutableSetOf<File>()
+        if (state != null) {
+            state.targetBranches.forEach(targetBranchesManager::onTargetBranch)
+            try {
+                val repository = getLocalRepo()
+                for (snapshot in state.snapshots) {
+                    val content = restoreContent(repository, snapshot) ?: continue
+                    branchRegistry[snapshot.branch] = BranchRecord(snapshot.hash, content)
+                    if (content is FileSystemBranchContent) {
+                        restoredRootDirs += content.rootDir
+                    }
+                    logger.info("Restored snapshot of branch '{}' at {}", snapshot.branch, snapshot.hash)
+                }
+            } catch (e: Throwable) {
+                logger.warn("Failed to restore branches state", e)
+            }
+        }
+        cleanUpContentDirs(restoredRootDirs)
+    }
+
+    private fun restoreContent(repository: Repository, snapshot: BranchSnapshotState): BranchContent? {
+        return try {
+            when (localGitParametersConfigProvider.data.storageMode) {
+                StorageMode.FILE_SYSTEM -> {
+                    val rootDir = snapshot.rootPath?.let { File(it) }
+                    if (rootDir == null || !rootDir.isDirectory) {
+                        logger.info("Content of branch '{}' at {} is not found", snapshot.branch, snapshot.hash)
+                        return null
+                    }
+                    FileSystemBranchContent(rootDir, getIndex(repository, snapshot.hash))
+                }
+                StorageMode.OBJECT_DATABASE -> {
+                    val tree = parseCommit(repository, snapshot.hash).tree
+                    ObjectDatabaseBranchContent(repository, tree, getIndex(repository, snapshot.hash))
+                }
+            }
+        } catch (e: Throwable) {
+            logger.warn("Failed to restore snapshot of branch '{}' at {}", snapshot.branch, snapshot.hash, e)
+            null
+        }
+    }
+
+    /**
+     * Removes snapshot directories which are not used anymore, e.g. left from previous service run
+     */
+    private fun cleanUpContentDirs(usedRootDirs: Set<File>) {
+        val contentDir = File(localGitParametersConfigProvider.data.rootDir, "content").absoluteFile
+        val usedDirs = usedRootDirs.map { it.absoluteFile }.toSet()
+        // branch names might contain slashes, so, snapshot dirs might be located at any depth under the content
+        // dir. That's why we keep all ancestors of used snapshot dirs and remove everything else
+        val usedParentDirs = mutableSetOf<File>()
+        for (dir in usedDirs) {
+            var parent = dir.parentFile
+            while (parent != null && parent != contentDir && usedParentDirs.add(parent)) {
+                parent = parent.parentFile
+            }
+        }
+        cleanUpDir(contentDir, usedDirs, usedParentDirs)
+    }
+
+    private fun cleanUpDir(dir: File, usedRootDirs: Set<File>, usedParentDirs: Set<File>) {
+        dir.listFiles()?.forEach { child ->
+            if (usedParentDirs.contains(child)) {
+                cleanUpDir(child, usedRootDirs, usedParentDirs)
+            } else if (!usedRootDirs.contains(child) && child.deleteRecursively()) {
+                logger.info("Removed unused content dir {}", child.absolutePath)
+            }
+        }
+    }
+
+    private fun storeState() {
+        branchesStateStorage.store(BranchesState(
+                targetBranches = targetBranchesManager.targetBranches.toSortedSet(),
+                snapshots = branchRegistry.entries.map { (branch, record) ->
+                    val rootDir = (record.content as? FileSystemBranchContent)?.rootDir
+                    BranchSnapshotState(branch, record.hash, rootDir?.absolutePath)
+                }.sortedBy { it.branch }
+        ))
+    }
+
+    @PreDestroy
+    fun stopRefresh() {
+        refreshExecutor.shutdownNow()
+        gitWorkers.shutdownNow()
+        reclaimExecutor.shutdown()
+        // local data is not expected to be modified after the service is stopped, e.g. by another service
+        // instance which is started with the same local data root dir
+        if (!refreshExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            logger.warn("Background git refresh is not stopped in {} ms", SHUTDOWN_TIMEOUT_MS)
+        }
+    }
 
     override fun <T> withBranch(branch: String, action: GitService.Action<T>): T? {
+        if (absentBranchesCache.isAbsent(branch)) {
+            logger.debug("Branch '{}' is known to be absent in remote repo", branch)
+            absentBranchHitsCounter.increment()
+            return null
+        }
         targetBranchesManager.onTargetBranch(branch)
         return withBranch(branch, action) {
-            update()
+            awaitBranchUpdate(branch)
             withBranch(branch, action) {
                 null
             }
         }
     }
 
+    override fun getCurrentHash(branch: String): String? {
+        val record = branchRegistry[branch] ?: return null
+        targetBranchesManager.onTargetBranch(branch)
+        return record.hash
+    }
+
+    override fun <T> withCommit(branch: String, hash: String, action: GitService.Action<T>): T? {
+        val repository = localRepo ?: return null
+        val branchHash = branchRegistry[branch]?.hash ?: return null
+        if (!ObjectId.isId(hash)) {
+            return null
+        }
+        val tree = try {
+            val revWalk = RevWalk(repository)
+            try {
+                val commit = revWalk.parseCommit(ObjectId.fromString(hash))
+                if (!isReachable(revWalk, commit, branchHash)) {
+                    logger.debug("Commit {} is not reachable from branch '{}' at {}", hash, branch, branchHash)
+                    return null
+                }
+                commit.tree
+            } finally {
+                revWalk.close()
+            }
+        } catch (e: Exception) {
+            logger.debug("Can't find commit {} in local repo", hash, e)
+            return null
+        }
+        // commit's content is often not needed at all because results for it are already cached
+        return action.doInBranch(hash, LazyBranchContent {
+            ObjectDatabaseBranchContent(repository, tree, getIndex(repository, hash))
+        })
+    }
+
+    /**
+     * @return  `true` if given commit is an ancestor of the given branch commit or is the branch commit itself
+     */
+    private fun isReachable(revWalk: RevWalk, commit: RevCommit, branchHash: String): Boolean {
+        if (commit.name == branchHash) {
+            return true
+        }
+        return reachableCommits.get("$branchHash:${commit.name}") {
+            revWalk.isMergedInto(commit, revWalk.parseCommit(ObjectId.fromString(branchHash)))
+        } ?: false
+    }
+
     private fun <T> withBranch(branch: String, branchAction: GitService.Action<T>, onAbsentBranchAction: () -> T?): T? {
-        return branchRegistry[branch]?.let { record ->
-            if (record.rootDir.isDirectory) {
-                record.lock.readLock().withLock {
-                    branchAction.doInBranch(record.hash, record.rootDir)
+        val record = acquire(branch) ?: return onAbsentBranchAction()
+        try {
+            if (isAvailable(record)) {
+                return branchAction.doInBranch(record.hash, record.content)
+            }
+        } finally {
+            release(record)
+        }
+        return onAbsentBranchAction()
+    }
+
+    /**
+     * Pins current snapshot of the given branch, that way its content is not removed until [release] is called
+     */
+    private fun acquire(branch: String): BranchRecord? {
+        while (true) {
+            val record = branchRegistry[branch] ?: return null
+            if (record.tryAcquire()) {
+                return record
+            }
+            // the record is replaced concurrently, re-read the registry
+        }
+    }
+
+    private fun release(record: BranchRecord) {
+        if (record.release()) {
+            reclaim(record)
+        }
+    }
+
+    private fun reclaim(record: BranchRecord) {
+        val content = record.content
+        if (content !is FileSystemBranchContent || !record.reclaimContent) {
+            return
+        }
+        reclaimExecutor.execute {
+            try {
+                if (content.rootDir.deleteRecursively()) {
+                    logger.info("Removed obsolete content (hash {}) in {}", record.hash, content.rootDir.absolutePath)
+                } else {
+                    logger.warn("Failed to remove obsolete content (hash {}) in {}",
+                                record.hash, content.rootDir.absolutePath)
                 }
-            } else {
-                onAbsentBranchAction()
+            } finally {
+                retiredRootDirs -= content.rootDir
             }
-        } ?: onAbsentBranchAction()
+        }
     }
 
-    private fun update(): RepoUpdateResult {
+    private fun isAvailable(record: BranchRecord): Boolean {
+        return when (val content = record.content) {
+            is FileSystemBranchContent -> content.rootDir.isDirectory
+            // local repo is re-created when its directory is removed, content of the previous one is not available
+            is ObjectDatabaseBranchContent -> {
+                content.repository === localRepo && content.repository.directory.isDirectory
+            }
+            else -> true
+        }
+    }
+
+    /**
+     * Asks background refresher to prepare given branch out of schedule and waits for that to happen
+     * at most [RefreshParameters.awaitTimeoutMs].
+     */
+    private fun awaitBranchUpdate(branch: String) {
+        var created = false
+        val future = pendingBranchUpdates.computeIfAbsent(branch) {
+            created = true
+            requestRepoUpdate(branch)
+        }
+        if (created) {
+            future.whenComplete { _, _ -> pendingBranchUpdates.remove(branch, future) }
+        } else {
+            branchCoalescedCounter.increment()
+        }
+
+        val timeoutMs = refreshParametersConfigProvider.data.awaitTimeoutMs
+        try {
+            future.get(timeoutMs, TimeUnit.MILLISECONDS)
+        } catch (e: TimeoutException) {
+            logger.warn("Branch '{}' is not prepared after {} ms, it will be available after background refresh",
+                        branch, timeoutMs)
+        } catch (e: ExecutionException) {
+            logger.warn("Got an exception on attempt to prepare branch '{}'", branch, e.cause)
+        }
+    }
+
+    /**
+     * Ensures that there is an out of schedule repo update which is not started yet and which updates
+     * given branch. All branches requested before that update starts are processed by it.
+     */
+    private fun requestRepoUpdate(branch: String): CompletableFuture<Unit> {
+        // the branch has to be registered before we check pending update, that way it's either picked up
+        // by the pending update or the update is already started and we schedule a new one
+        branchesToForceUpdate += branch
+        val future = CompletableFuture<Unit>()
+        val pending = pendingRepoUpdate.getAndUpdate { it ?: future }
+        if (pending != null) {
+            repoCoalescedCounter.increment()
+            return pending
+        }
+        refreshExecutor.execute {
+            runForcedUpdate(future)
+        }
+        return future
+    }
+
+    private fun runForcedUpdate(future: CompletableFuture<Unit>) {
+        pendingRepoUpdate.compareAndSet(future, null)
+        val branches = branchesToForceUpdate.toSet()
+        branchesToForceUpdate.removeAll(branches)
+        try {
+            update(branches)
+            future.complete(Unit)
+        } catch (e: Throwable) {
+            logger.warn("Got an exception on attempt to update branches {}", branches, e)
+            future.completeExceptionally(e)
+        }
+    }
+
+    private fun refreshSafely() {
+        try {
+            update(emptySet())
+        } catch (e: Throwable) {
+            // we don't want to propagate the exception because that stops subsequent scheduled executions
+            logger.warn("Got an exception during background git refresh", e)
+        }
+    }
+
+    /**
+     * Updates target branches which are due for update according to the [RefreshParameters]
+     *
+     * @param forcedBranches    branches which should be updated regardless of their schedule
+     */
+    private fun update(forcedBranches: Set<String>): RepoUpdateResult {
+        return try {
+            doUpdate(forcedBranches)
+        } finally {
+            evictBranches(forcedBranches)
+            storeState()
+        }
+    }
+
+    /**
+     * Evicts branches according to the [EvictionParameters]
+     *
+     * @param requestedBranches     branches which are awaited by clients right now, they are never evicted
+     */
+    private fun evictBranches(requestedBranches: Set<String>) {
+        val parameters = evictionParametersConfigProvider.data
+        val now = System.currentTimeMillis()
+        // branches which are requested concurrently and are waiting for the next update are not evicted as well,
+        // otherwise the update would skip them and their clients would get no snapshot
+        val lastAccessTimesMs = targetBranchesManager.targetBranches.filterNot {
+            requestedBranches.contains(it) || pendingBranchUpdates.containsKey(it) || branchesToForceUpdate.contains(it)
+        }.mapNotNull { branch ->
+            targetBranchesManager.getLastAccessTimeMs(branch)?.let { branch to it }
+        }.sortedBy { it.second }
+
+        val idleBranches = if (parameters.branchIdleTtlMs > 0) {
+            lastAccessTimesMs.filter { now - it.second >= parameters.branchIdleTtlMs }.map { it.first }
+        } else {
+            emptyList()
+        }
+        idleBranches.forEach {
+            logger.info("Evicting branch '{}' which is not requested during {} ms", it, parameters.branchIdleTtlMs)
+            evictBranch(it)
+        }
+
+        if (parameters.diskBudgetBytes <= 0) {
+            return
+        }
+        var usedBytes = branchRegistry.values.fold(0L) { size, record ->
+            size + ((record.content as? FileSystemBranchContent)?.sizeBytes ?: 0L)
+        }
+        // the most recently used branch is kept even if it alone exceeds the budget, otherwise it would be
+        // evicted and prepared again all the time
+        val candidates = lastAccessTimesMs.dropLast(1).map { it.first } - idleBranches
+        for (branch in candidates) {
+            if (usedBytes <= parameters.diskBudgetBytes) {
+                break
+            }
+            val content = branchRegistry[branch]?.content as? FileSystemBranchContent ?: continue
+            logger.info("Evicting least recently used branch '{}' ({} bytes) as local data takes {} bytes which "
+                        + "exceeds the budget of {} bytes", branch, content.sizeBytes, usedBytes,
+                        parameters.diskBudgetBytes)
+            usedBytes -= content.sizeBytes
+            evictBranch(branch)
+        }
+    }
+
+    private fun evictBranch(branch: String) {
+        targetBranchesManager.onRemovedBranch(branch)
+        nextBranchUpdateTimeMs.remove(branch)
+        branchRegistry.remove(branch)?.let { retire(it) }
+        try {
+            deleteLocalRef(getLocalRepo(), branch)
+        } catch (e: Throwable) {
+            logger.warn("Failed to remove local ref for evicted branch '{}'", branch, e)
+        }
+    }
+
+    private fun doUpdate(forcedBranches: Set<String>): RepoUpdateResult {
+        // remote branches are listed even if there are no target branches when some branches are reported
+        // as absent, that way they are available as soon as they appear in remote repo
+        if (targetBranchesManager.targetBranches.isEmpty() && !absentBranchesCache.hasAbsentBranches()) {
+            return BranchesUpdateResults(emptyList())
+        }
+
         val listBranchesResult = listRemoteBranches(remoteGitParametersConfigProvider.data)
         if (!listBranchesResult.success) {
             return listBranchesResult.failureValue
         }
 
-        val remoteBranchNames = listBranchesResult.successValue.map { it.name }.toSortedSet()
-        logger.info("Found {} remote branches: {}", remoteBranchNames.size, remoteBranchNames)
+        val remoteBranches = listBranchesResult.successValue.associateBy { it.name }
+        val remoteBranchNames = remoteBranches.keys.toSortedSet()
+        logger.debug("Found {} remote branches: {}", remoteBranchNames.size, remoteBranchNames)
+        absentBranchesCache.onRemoteBranches(remoteBranchNames)
+        for (branch in forcedBranches) {
+            if (!remoteBranchNames.contains(branch)) {
+                logger.info("Requested branch '{}' is not found in remote repo", branch)
+                absentBranchesCache.onAbsentBranch(branch)
+            }
+        }
 
         val (activeBranches, removedBranches) = targetBranchesManager.targetBranches.partition {
             remoteBranchNames.contains(it)
@@ -76,22 +556,254 @@ class GitServiceImpl(
         if (removedBranches.isNotEmpty()) {
             logger.info("{} branches are not found in remote repo, removing them from active branches list: {}",
                         removedBranches.size, removedBranches)
-            removedBranches.forEach(targetBranchesManager::onRemovedBranch)
+            for (branch in removedBranches) {
+                targetBranchesManager.onRemovedBranch(branch)
+                nextBranchUpdateTimeMs.remove(branch)
+                branchRegistry.remove(branch)?.let { retire(it) }
+            }
+        }
+
+        val now = System.currentTimeMillis()
+        val dueBranches = activeBranches.filter {
+            forcedBranches.contains(it)
+            || !branchRegistry.containsKey(it)
+            || now >= (nextBranchUpdateTimeMs[it] ?: 0L)
+        }
+        dueBranches.forEach {
+            scheduleNextUpdate(it, now)
         }
 
-        val repoRoot = File(localGitParametersConfigProvider.data.rootDir, "repo")
-        cleanUpRemovedBranches(remoteBranchNames, repoRoot)
+        // there is no need to do anything for branches which remote hash matches the one we already expose
+        val (upToDateBranches, changedBranches) = dueBranches.mapNotNull { remoteBranches[it] }.partition {
+            isUpToDate(it)
+        }
+        onBranchesCheck(upToDateBranches.size, changedBranches.size)
+        return updateBranches(changedBranches, removedBranches)
+    }
 
-        return BranchesUpdateResults(activeBranches.map { branchName ->
-            val branchRepoRootDir = File(repoRoot, branchName)
-            prepareLocalRepo(branchRepoRootDir, branchName).apply {
-                if (this is BranchUpdateResult.Success) {
-                    onUpdatedBranch(this.branch, branchRepoRootDir)
+    private fun isUpToDate(branch: GitBranch): Boolean {
+        return branchRegistry[branch.name]?.let {
+            it.hash == branch.hash && isAvailable(it)
+        } ?: false
+    }
+
+    private fun onBranchesCheck(upToDateBranchesCount: Int, changedBranchesCount: Int) {
+        if (upToDateBranchesCount + changedBranchesCount == 0) {
+            return
+        }
+        skippedBranchesCounter.increment(upToDateBranchesCount.toDouble())
+        updatedBranchesCounter.increment(changedBranchesCount.toDouble())
+        lastSkippedBranchesRatio = upToDateBranchesCount.toDouble() / (upToDateBranchesCount + changedBranchesCount)
+        logger.debug("{} due branches are up to date, {} branches are changed",
+                     upToDateBranchesCount, changedBranchesCount)
+    }
+
+    /**
+     * Fetches given branches into the local repo and publishes their new content. Only branches which local refs
+     * differ from the remote ones are fetched, all of them are fetched at once.
+     *
+     * @param branches          branches to update, their hashes are expected to be taken from the remote repo
+     * @param removedBranches   branches which don't exist in remote repo anymore
+     */
+    private fun updateBranches(branches: Collection<GitBranch>, removedBranches: Collection<String>): RepoUpdateResult {
+        val repository = try {
+            getLocalRepo()
+        } catch (e: Throwable) {
+            logger.warn("Failed to prepare local git repo", e)
+            return RepoUpdateFailure("failed to prepare local git repo", e)
+        }
+
+        removedBranches.forEach {
+            deleteLocalRef(repository, it)
+        }
+        if (branches.isEmpty()) {
+            return BranchesUpdateResults(emptyList())
+        }
+
+        // all changed branches are fetched at once. If that fails, every branch is fetched separately, that way
+        // a single problem branch doesn't prevent others from being updated
+        val branchesToFetch = branches.filter {
+            repository.exactRef(Constants.R_HEADS + it.name)?.objectId?.name != it.hash
+        }
+        // the combined fetch is bounded by the fetch timeout, so, a hung remote delays the refresh at most by it
+        val fetchSeparately = branchesToFetch.isNotEmpty() && !fetch(repository, branchesToFetch)
+
+        val futures = branches.map { branch ->
+            branch to submitBranchUpdate(branch) {
+                if (fetchSeparately && branchesToFetch.contains(branch)) {
+                    if (!fetch(repository, listOf(branch))) {
+                        return@submitBranchUpdate BranchUpdateResult.Failure(
+                                branch.name, "failed fetching branch '${branch.name}'"
+                        )
+                    }
                 }
+                publishBranch(repository, branch.name)
             }
+        }
+        val timeoutMs = refreshParametersConfigProvider.data.branchTimeoutMs
+        return BranchesUpdateResults(futures.map { (branch, future) ->
+            awaitUpdateResult(branch, future, timeoutMs)
         })
     }
 
+    /**
+     * Waits for the given branch update at most given time since a git worker picks it up. An update which
+     * is not finished by then is cancelled. An update which is not picked up by a worker in the given time
+     * is left in the queue, it's performed later then.
+     */
+    private fun awaitUpdateResult(
+        branch: GitBranch,
+        future: Future<BranchUpdateResult>,
+        timeoutMs: Long
+    ): BranchUpdateResult {
+        return try {
+            if (future is BranchUpdateTask) {
+                if (!future.awaitStart(timeoutMs)) {
+                    logger.warn("Branch '{}' update is not started in {} ms - all git workers are busy",
+                                branch.name, timeoutMs)
+                    return BranchUpdateResult.Failure(branch.name, "branch '${branch.name}' update is not started")
+                }
+                future.get(Math.max(future.startTimeMs + timeoutMs - System.currentTimeMillis(), 0L),
+                           TimeUnit.MILLISECONDS)
+            } else {
+                future.get()
+            }
+        } catch (e: TimeoutException) {
+            // the update is interrupted and doesn't publish the branch if it completes after all
+            future.cancel(true)
+            logger.warn("Branch '{}' is not updated in {} ms, cancelling its update", branch.name, timeoutMs)
+            BranchUpdateResult.Failure(branch.name, "branch '${branch.name}' update timed out", e)
+        } catch (e: CancellationException) {
+            BranchUpdateResult.Failure(branch.name, "branch '${branch.name}' update is cancelled", e)
+        } catch (e: ExecutionException) {
+            BranchUpdateResult.Failure(branch.name, "failed updating branch '${branch.name}'", e.cause)
+        }
+    }
+
+    /**
+     * Runs given branch update action on git workers pool unless previous update of the same branch
+     * is still in progress. The branch is considered to be in progress until the action is done or until
+     * the update is cancelled before the action is started.
+     */
+    private fun submitBranchUpdate(
+        branch: GitBranch,
+        action: () -> BranchUpdateResult
+    ): Future<BranchUpdateResult> {
+        if (!inProgressBranchUpdates.add(branch.name)) {
+            logger.warn("Skipping branch '{}' update - previous update is still in progress", branch.name)
+            return CompletableFuture.completedFuture(BranchUpdateResult.Failure(
+                    branch.name, "previous update of branch '${branch.name}' is still in progress"
+            ))
+        }
+        val task = BranchUpdateTask(action) {
+            inProgressBranchUpdates.remove(branch.name)
+        }
+        return try {
+            gitWorkers.execute(task)
+            task
+        } catch (e: RejectedExecutionException) {
+            inProgressBranchUpdates.remove(branch.name)
+            CompletableFuture.completedFuture(BranchUpdateResult.Failure(
+                    branch.name, "failed scheduling branch '${branch.name}' update", e
+            ))
+        }
+    }
+
+    /**
+     * @return  `true` if given branches are successfully fetched; `false` otherwise
+     */
+    private fun fetch(repository: Repository, branches: Collection<GitBranch>): Boolean {
+        val timeoutSeconds = TimeUnit.MILLISECONDS.toSeconds(refreshParametersConfigProvider.data.branchTimeoutMs)
+        return try {
+            Git(repository).fetch()
+                .setRemote(remoteGitParametersConfigProvider.data.uri)
+                .setRefSpecs(branches.map { getRefSpec(it.name) })
+                .setTimeout(timeoutSeconds.toInt().coerceAtLeast(1))
+                .call()
+            logger.info("Fetched {} branches: {}", branches.size, branches.map { it.name })
+            true
+        } catch (e: Throwable) {
+            logger.warn("Failed to fetch branches {} into {}", branches.map { it.name }, repository.directory, e)
+            false
+        }
+    }
+
+    private fun publishBranch(repository: Repository, branchName: String): BranchUpdateResult {
+        return try {
+            val commitId = repository.exactRef(Constants.R_HEADS + branchName)?.objectId
+                           ?: throw IllegalStateException("No fetched ref is found for branch '$branchName'")
+            val commit = parseCommit(repository, commitId)
+            val fetchedBranch = GitBranch(branchName, commit.name)
+            onUpdatedBranch(fetchedBranch) { previous ->
+                when (localGitParametersConfigProvider.data.storageMode) {
+                    StorageMode.FILE_SYSTEM -> storeBranchContent(fetchedBranch, repository, previous)
+                    StorageMode.OBJECT_DATABASE -> {
+                        ObjectDatabaseBranchContent(repository, commit.tree, getIndex(repository, commit.name))
+                    }
+                }
+            }
+            BranchUpdateResult.Success(fetchedBranch)
+        } catch (e: Throwable) {
+            logger.warn("Failed to update branch '{}'", branchName, e)
+            BranchUpdateResult.Failure(branchName, "failed updating branch '$branchName'", e)
+        }
+    }
+
+    private fun deleteLocalRef(repository: Repository, branch: String) {
+        val refName = Constants.R_HEADS + branch
+        if (repository.exactRef(refName) == null) {
+            return
+        }
+        try {
+            repository.updateRef(refName).apply {
+                setForceUpdate(true)
+            }.delete()
+            logger.info("Removed local ref for branch '{}'", branch)
+        } catch (e: Throwable) {
+            logger.warn("Got an exception on attempt to remove local ref for branch '{}'", branch, e)
+        }
+    }
+
+    private fun getRefSpec(branch: String): RefSpec {
+        return RefSpec("+${Constants.R_HEADS}$branch:${Constants.R_HEADS}$branch")
+    }
+
+    private fun getLocalRepo(): Repository {
+        val rootDir = localGitParametersConfigProvider.data.rootDir
+        val dir = File(rootDir, "repo.git")
+        localRepo?.let {
+            if (it.directory.isDirectory) {
+                return it
+            }
+            it.close()
+        }
+
+        val repository = if (dir.isDirectory) {
+            FileRepositoryBuilder().setGitDir(dir).setBare().build()
+        } else {
+            logger.info("Creating local git repo at {}", dir.absolutePath)
+            Git.init().setBare(true).setDirectory(dir).call().repository
+        }
+        localRepo = repository
+
+        // previous versions used to keep a separate git repo clone per branch
+        val legacyReposDir = File(rootDir, "repo")
+        if (legacyReposDir.isDirectory && legacyReposDir.deleteRecursively()) {
+            logger.info("Removed legacy per-branch git repos at {}", legacyReposDir.absolutePath)
+        }
+        return repository
+    }
+
+    private fun scheduleNextUpdate(branch: String, now: Long) {
+        val parameters = refreshParametersConfigProvider.data
+        val jitterMs = if (parameters.jitterMs > 0) {
+            ThreadLocalRandom.current().nextLong(parameters.jitterMs + 1)
+        } else {
+            0L
+        }
+        nextBranchUpdateTimeMs[branch] = now + parameters.branchIntervalMs + jitterMs
+    }
+
     private fun listRemoteBranches(
         parameters: RemoteGitParameters
     ): ProcessingResult<Collection<GitBranch>, RepoUpdateFailure> {
@@ -112,109 +824,110 @@ class GitServiceImpl(
     }
 
     private fun getBranchName(qualifiedBranchName: String): String {
-        val i = qualifiedBranchName.lastIndexOf("/")
-        return if (i > 0) {
-            qualifiedBranchName.substring(i + 1)
+        return if (qualifiedBranchName.startsWith(Constants.R_HEADS)) {
+            qualifiedBranchName.substring(Constants.R_HEADS.length)
         } else {
             qualifiedBranchName
         }
     }
 
-    private fun cleanUpRemovedBranches(availableRemoteBranches: Set<String>, branchesRootDir: File) {
-        branchesRootDir.listFiles()?.let {
-            for (branchDir in it) {
-                if (!availableRemoteBranches.contains(branchDir.name)) {
-                    try {
-                        branchDir.deleteRecursively()
-                        logger.info("Removed local git repo for obsolete branch '{}' ({})",
-                                    branchDir.name, branchDir.absolutePath)
-                    } catch (e: Throwable) {
-                        logger.warn("Got an exception on attempt to remove a local git repo for "
-                                    + "obsolete branch '{}' ({})", branchDir.name, branchDir.absolutePath, e)
-                    }
-                }
-            }
+    /**
+     * Publishes new branch content unless current branch snapshot already corresponds to the given branch hash.
+     * Is expected to be called for the same branch sequentially.
+     */
+    private fun onUpdatedBranch(branch: GitBranch, prepareContent: (previous: BranchRecord?) -> BranchContent?) {
+        val record = branchRegistry[branch.name]
+        if (record != null && record.hash == branch.hash && isAvailable(record)) {
+            return
         }
-    }
 
-    private fun prepareLocalRepo(branchRepoRootDir: File, branchName: String): BranchUpdateResult {
-        try {
-            updateExistingLocalRepo(branchRepoRootDir)?.let { headHash ->
-                return BranchUpdateResult.Success(GitBranch(branchName, headHash))
+        val content = prepareContent(record) ?: return
+        if (targetBranchesManager.getLastAccessTimeMs(branch.name) == null) {
+            // the branch is evicted or removed while its update is in progress
+            logger.info("Skipping snapshot of branch '{}' at {} - the branch is not a target branch anymore",
+                        branch.name, branch.hash)
+            discard(content)
+            return
+        }
+        for (listener in snapshotListeners) {
+            try {
+                listener.onSnapshotPrepared(branch.name, branch.hash, content)
+            } catch (e: Throwable) {
+                logger.warn("Got an exception on attempt to notify {} about new snapshot of branch '{}' at {}",
+                            listener, branch.name, branch.hash, e)
             }
-        } catch (e: Throwable) {
-            logger.warn("Got an exception on attempt to update local git repo at {}", branchRepoRootDir.absolutePath)
         }
-
-        return try {
-            clone(branchRepoRootDir, branchName)
-        } catch (e: Throwable) {
-            logger.warn("Failed cloning remote git branch {} into {}", branchName, branchRepoRootDir.absolutePath, e)
-            BranchUpdateResult.Failure(branchName, "failed cloning branch '$branchName'", e)
+        // the check is done after the listeners are notified because they might take a while, e.g. pre-render
+        // configs for the new snapshot
+        if (Thread.currentThread().isInterrupted) {
+            logger.info("Skipping snapshot of branch '{}' at {} - its update is cancelled", branch.name, branch.hash)
+            discard(content)
+            return
+        }
+        val newRecord = BranchRecord(branch.hash, content)
+        branchRegistry[branch.name] = newRecord
+        if (record != null) {
+            val previousRootDir = (record.content as? FileSystemBranchContent)?.rootDir
+            if (content is FileSystemBranchContent && content.rootDir == previousRootDir) {
+                record.reclaimContent = false
+            }
+            retire(record)
+        }
+        for (listener in snapshotListeners) {
+            try {
+                listener.onSnapshotPublished(branch.name, branch.hash, content)
+            } catch (e: Throwable) {
+                logger.warn("Got an exception on attempt to notify {} about published snapshot of branch '{}' at {}",
+                            listener, branch.name, branch.hash, e)
+            }
         }
     }
 
-    private fun updateExistingLocalRepo(localRepoRootDir: File): String? {
-        if (!localRepoRootDir.isDirectory) {
-            logger.info("No local git repo is found at {}", localRepoRootDir.absolutePath)
-            return null
+    /**
+     * Removes storage of the given content which is prepared but is not published
+     */
+    private fun discard(content: BranchContent) {
+        if (content !is FileSystemBranchContent) {
+            return
         }
-
-        val result = Git.open(localRepoRootDir).pull().apply {
-            remote = "origin"
-        }.call()
-        return if (result.isSuccessful) {
-            val head = result.mergeResult.newHead.name
-            logger.info("Updated local git repo at {} to HEAD {}", localRepoRootDir.absolutePath, head)
-            head
-        } else {
-            logger.warn("Failed to update local git repo at {}", localRepoRootDir.absolutePath)
-            null
+        val published = branchRegistry.values.any {
+            (it.content as? FileSystemBranchContent)?.rootDir == content.rootDir
+        }
+        if (!published && content.rootDir.deleteRecursively()) {
+            logger.info("Removed unpublished content in {}", content.rootDir.absolutePath)
         }
     }
 
-    private fun clone(localRepoRootDir: File, branchName: String): BranchUpdateResult {
-        logger.info("Preparing new local git repo for branch '{}' at {}", branchName, localRepoRootDir.absolutePath)
-        if (localRepoRootDir.exists()) {
-            if (!localRepoRootDir.deleteRecursively()) {
-                logger.warn("Failed to remove directory {}", localRepoRootDir.absolutePath)
-            }
+    /**
+     * Drops registry's reference to the given snapshot, its content is removed as soon as all its readers are done
+     */
+    private fun retire(record: BranchRecord) {
+        val content = record.content
+        if (content is FileSystemBranchContent && record.reclaimContent) {
+            retiredRootDirs += content.rootDir
         }
-        FileUtil.ensureDirectoryExists(localRepoRootDir)
-        val git = Git.cloneRepository()
-            .setDirectory(localRepoRootDir)
-            .setBranch(branchName)
-            .setURI(remoteGitParametersConfigProvider.data.uri)
-            .call()
-        logger.info("Successfully prepared local git repo for branch '{}' at {}",
-                    branchName, localRepoRootDir.absolutePath)
-        val headHash = git.log().setMaxCount(1).call().first().id.name
-        return BranchUpdateResult.Success(GitBranch(branchName, headHash))
+        release(record)
     }
 
-    private fun onUpdatedBranch(branch: GitBranch, branchRepoRootDir: File) {
-        branchRegistry.compute(branch.name) { _, record ->
-            if (record?.hash == branch.hash) {
-                return@compute record
-            }
-
-            val storedRootDir = storeBranchContent(branch, branchRepoRootDir) ?: return@compute record
-            record?.lock?.writeLock()?.withLock {
-                try {
-                    record.rootDir.delete()
-                    logger.info("Removed obsolete content for branch '{}' (hash {}) in {}",
-                                branch.name, branch.hash, record.rootDir.absolutePath)
-                } catch (e: Throwable) {
-                    logger.warn("Got an exception on attempt to remove obsolete content for branch '{}' "
-                                + "(hash {}) in {}", branch.name, branch.hash, record.rootDir.absolutePath)
-                }
+    /**
+     * Stores files from the target commit's tree (without git metadata) in a new content directory. Files which
+     * are not changed since the previous snapshot are hard-linked to it instead of being written again.
+     */
+    private fun storeBranchContent(
+        branch: GitBranch,
+        repository: Repository,
+        previous: BranchRecord?
+    ): FileSystemBranchContent? {
+        val branchContentDir = File(localGitParametersConfigProvider.data.rootDir, "content/${branch.name}")
+        val newRootDir = File(branchContentDir, branch.hash).let {
+            // a retired snapshot for the same hash might still be in use, e.g. when the branch is reset
+            // to one of the previous commits, we don't want to interfere with its removal then
+            if (retiredRootDirs.contains(it)) {
+                File(branchContentDir, "${branch.hash}-${System.currentTimeMillis()}")
+            } else {
+                it
             }
-            BranchRecord(branch.hash, storedRootDir)
         }
-    }
-
-    private fun storeBranchContent(branch: GitBranch, branchRootDir: File): File? {
-        val newRootDir = File(localGitParametersConfigProvider.data.rootDir, "content/${branch.name}/${branch.hash}")
         if (newRootDir.exists()) {
             if (newRootDir.deleteRecursively()) {
                 logger.info("Removed existing root dir for branch '{}': {}", branch.name, newRootDir.absolutePath)
@@ -226,19 +939,161 @@ class GitServiceImpl(
         }
 
         FileUtil.ensureDirectoryExists(newRootDir)
-        branchRootDir.copyRecursively(newRootDir, onError = FILE_COPY_ERROR_HANDLER)
-        logger.info("Stored content for branch '{}' and hash {} in {}",
-                    branch.name, branch.hash, newRootDir.absolutePath)
-        return newRootDir
+        val index = SnapshotIndex.Builder()
+        val previousContent = previous?.content as? FileSystemBranchContent
+        val linkedFilesCount = try {
+            storeTree(repository, branch, newRootDir, previousContent, index)
+        } catch (e: Throwable) {
+            logger.warn("Failed to store content for branch '{}' and hash {} in {}",
+                        branch.name, branch.hash, newRootDir.absolutePath, e)
+            newRootDir.deleteRecursively()
+            return null
+        }
+        val content = FileSystemBranchContent(newRootDir, index.build())
+        commitIndexes.put(branch.hash, content.index)
+        logger.info("Stored content for branch '{}' and hash {} in {} ({} files, {} of them are linked to the "
+                    + "previous snapshot)", branch.name, branch.hash, newRootDir.absolutePath,
+                    content.index.filesCount, linkedFilesCount)
+        return content
     }
 
-    companion object {
-        private val FILE_COPY_ERROR_HANDLER: (File, IOException) -> OnErrorAction = { _, _ ->
-            OnErrorAction.SKIP
+    /**
+     * @return  number of files which are hard-linked to the previous snapshot
+     */
+    private fun storeTree(
+        repository: Repository,
+        branch: GitBranch,
+        rootDir: File,
+        previous: FileSystemBranchContent?,
+        index: SnapshotIndex.Builder
+    ): Int {
+        var linkedFilesCount = 0
+        val preparedDirs = mutableSetOf(rootDir)
+        forEachFile(repository, branch.hash) { path, blobId, size ->
+            val file = File(rootDir, path)
+            if (preparedDirs.add(file.parentFile)) {
+                FileUtil.ensureDirectoryExists(file.parentFile)
+            }
+            if (previous != null
+                && previous.index.getFile(path)?.blobId == blobId
+                && link(File(previous.rootDir, path), file)
+            ) {
+                linkedFilesCount++
+            } else {
+                file.outputStream().use {
+                    repository.open(blobId, Constants.OBJ_BLOB).copyTo(it)
+                }
+            }
+            index.add(path, blobId, size)
         }
+        return linkedFilesCount
     }
 
-    private data class BranchRecord(val hash: String, val rootDir: File) {
-        val lock = ReentrantReadWriteLock()
+    private fun getIndex(repository: Repository, commitHash: String): SnapshotIndex {
+        return commitIndexes.get(commitHash) {
+            buildIndex(repository, commitHash)
+        }
+    }
+
+    private fun buildIndex(repository: Repository, commitHash: String): SnapshotIndex {
+        val index = SnapshotIndex.Builder()
+        forEachFile(repository, commitHash) { path, blobId, size ->
+            index.add(path, blobId, size)
+        }
+        return index.build()
+    }
+
+    /**
+     * Calls given action for every file in the target commit's tree
+     */
+    private fun forEachFile(
+        repository: Repository,
+        commitHash: String,
+        action: (path: String, blobId: ObjectId, size: Long) -> Unit
+    ) {
+        val treeWalk = TreeWalk(repository)
+        try {
+            treeWalk.addTree(parseCommit(repository, commitHash).tree)
+            treeWalk.isRecursive = true
+            while (treeWalk.next()) {
+                val mode = treeWalk.getFileMode(0)
+                if (mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE) {
+                    val blobId = treeWalk.getObjectId(0)
+                    action(treeWalk.pathString, blobId, treeWalk.objectReader.getObjectSize(blobId, Constants.OBJ_BLOB))
+                }
+            }
+        } finally {
+            treeWalk.close()
+        }
+    }
+
+    private fun parseCommit(repository: Repository, commitId: AnyObjectId): RevCommit {
+        val revWalk = RevWalk(repository)
+        return try {
+            revWalk.parseCommit(commitId)
+        } finally {
+            revWalk.close()
+        }
+    }
+
+    private fun parseCommit(repository: Repository, commitHash: String): RevCommit {
+        return parseCommit(repository, ObjectId.fromString(commitHash))
+    }
+
+    private fun link(existing: File, link: File): Boolean {
+        return try {
+            Files.createLink(link.toPath(), existing.toPath())
+            true
+        } catch (e: Exception) {
+            logger.debug("Failed to create a hard link {} to {}", link.absolutePath, existing.absolutePath, e)
+            false
+        }
+    }
+
+    companion object {
+        private const val COALESCED_COUNTER = "inpertio.git.update.coalesced"
+        private const val BRANCH_CHECK_COUNTER = "inpertio.git.branch.check"
+        private const val SKIPPED_BRANCHES_RATIO_GAUGE = "inpertio.git.branch.skipped.ratio"
+        private const val ABSENT_BRANCH_HITS_COUNTER = "inpertio.git.branch.absent.hits"
+        private const val COMMIT_INDEXES_CACHE_SIZE = 32L
+        private const val REACHABLE_COMMITS_CACHE_SIZE = 1024L
+        private const val SHUTDOWN_TIMEOUT_MS = 10_000L
+    }
+
+    /**
+     * Immutable branch snapshot which is pinned by its readers. The registry holds one reference to the snapshot
+     * while it's current, so, the snapshot can be reclaimed only after it's replaced and all readers are done.
+     */
+    private class BranchRecord(val hash: String, val content: BranchContent) {
+
+        private val references = AtomicInteger(1)
+
+        /**
+         * Defines whether snapshot's content should be removed when the snapshot is not used anymore.
+         * It's not the case when new snapshot re-uses the same storage.
+         */
+        @Volatile var reclaimContent = true
+
+        /**
+         * @return  `true` if the snapshot is pinned; `false` if it's already reclaimed
+         */
+        fun tryAcquire(): Boolean {
+            while (true) {
+                val current = references.get()
+                if (current <= 0) {
+                    return false
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true
+                }
+            }
+        }
+
+        /**
+         * @return  `true` if the last reference to this snapshot is released
+         */
+        fun release(): Boolean {
+            return references.decrementAndGet() == 0
+        }
     }
-}
\ No newline at end of file
+}
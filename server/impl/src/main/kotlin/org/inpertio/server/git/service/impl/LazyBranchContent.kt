@@ -0,0 +1,28 @@
+package org.inpertio.server.git.service.impl
+
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.ContentFile
+
+/**
+ * [BranchContent] which prepares actual content only on the first access to it
+ */
+class LazyBranchContent(init: () -> BranchContent) : BranchContent {
+
+    private val delegate by lazy(init)
+
+    override fun exists(path: String): Boolean {
+        return delegate.exists(path)
+    }
+
+    override fun getFile(path: String): ContentFile? {
+        return delegate.getFile(path)
+    }
+
+    override fun listFiles(path: String): List<ContentFile> {
+        return delegate.listFiles(path)
+    }
+
+    override fun toString(): String {
+        return delegate.toString()
+    }
+}
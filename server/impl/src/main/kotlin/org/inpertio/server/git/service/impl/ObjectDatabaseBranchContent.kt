@@ -0,0 +1,65 @@
+package org.inpertio.server.git.service.impl
+
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.Repository
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.ContentFile
+import org.inpertio.server.util.FileUtil
+import java.io.InputStream
+
+/**
+ * [BranchContent] which reads target commit's blobs directly from local git object database, no working tree
+ * is required for it.
+ *
+ * @param repository    local repo which object database holds the content
+ * @param index         index of the target commit's tree
+ */
+class ObjectDatabaseBranchContent(
+    val repository: Repository,
+    private val treeId: ObjectId,
+    val index: SnapshotIndex
+) : BranchContent {
+
+    override fun exists(path: String): Boolean {
+        val normalizedPath = FileUtil.normalizeRelativePath(path) ?: return false
+        return index.getFile(normalizedPath) != null || index.isDirectory(normalizedPath)
+    }
+
+    override fun getFile(path: String): ContentFile? {
+        val normalizedPath = FileUtil.normalizeRelativePath(path) ?: return null
+        return index.getFile(normalizedPath)?.let { ObjectDatabaseContentFile(it) }
+    }
+
+    override fun listFiles(path: String): List<ContentFile> {
+        val normalizedPath = FileUtil.normalizeRelativePath(path) ?: return emptyList()
+        index.getFile(normalizedPath)?.let {
+            return listOf(ObjectDatabaseContentFile(it))
+        }
+        return index.listFiles(normalizedPath).map { ObjectDatabaseContentFile(it) }
+    }
+
+    override fun toString(): String {
+        return "tree $treeId in ${repository.directory.absolutePath}"
+    }
+
+    private inner class ObjectDatabaseContentFile(private val entry: SnapshotIndex.Entry) : ContentFile {
+
+        override val path: String
+            get() = entry.path
+
+        override val blobId: String
+            get() = entry.blobId.name
+
+        override val size: Long
+            get() = entry.size
+
+        override fun openStream(): InputStream {
+            return repository.open(entry.blobId, Constants.OBJ_BLOB).openStream()
+        }
+
+        override fun toString(): String {
+            return "$path ($blobId)"
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.inpertio.server.git.service.impl
+
+import org.eclipse.jgit.lib.ObjectId
+import java.util.TreeMap
+
+/**
+ * In-memory index of files of an immutable branch snapshot. It's built once when the snapshot is prepared,
+ * so, path lookups and directories expansion don't touch the snapshot storage.
+ *
+ * All paths are expected to be normalized, i.e. relative to the repo root, `/`-separated and without
+ * leading or trailing separators. Empty path points to the repo root.
+ */
+class SnapshotIndex private constructor(
+    private val files: TreeMap<String/* path */, Entry>,
+    private val directories: Set<String/* path */>
+) {
+
+    val filesCount: Int
+        get() = files.size
+
+    /**
+     * Total size of all indexed files
+     */
+    val sizeBytes: Long = files.values.fold(0L) { size, entry -> size + entry.size }
+
+    fun getFile(path: String): Entry? {
+        return files[path]
+    }
+
+    fun isDirectory(path: String): Boolean {
+        return directories.contains(path)
+    }
+
+    /**
+     * @return  all files located under the given directory recursively ordered by their paths
+     */
+    fun listFiles(directory: String): Collection<Entry> {
+        return if (directory.isEmpty()) {
+            files.values
+        } else {
+            // '0' is the next character after '/', so, the range covers all paths which start with "<directory>/"
+            files.subMap("$directory/", true, "${directory}0", false).values
+        }
+    }
+
+    class Entry(val path: String, val blobId: ObjectId, val size: Long)
+
+    class Builder {
+
+        private val files = TreeMap<String, Entry>()
+        private val directories = mutableSetOf("")
+
+        fun add(path: String, blobId: ObjectId, size: Long): Builder {
+            files[path] = Entry(path, blobId, size)
+            var i = path.lastIndexOf('/')
+            while (i > 0 && directories.add(path.substring(0, i))) {
+                i = path.lastIndexOf('/', i - 1)
+            }
+            return this
+        }
+
+        fun build(): SnapshotIndex {
+            return SnapshotIndex(files, directories)
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.inpertio.server.git.service.impl
 
 import org.springframework.stereotype.Component
-import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 
 /**
@@ -9,20 +8,38 @@ import java.util.concurrent.ConcurrentHashMap
  * to update all of them every time, it's rather slow. That's why we limit it only to the branches requested
  * by clients.
  *
- * This class manages that target branches info.
+ * This class manages that target branches info. It also tracks when every target branch was requested last
+ * time, that way branches which are not used anymore can be evicted.
  */
 @Component
 class TargetBranchesManager {
 
-    private val _targetBranches: MutableSet<String> = Collections.newSetFromMap(ConcurrentHashMap())
+    private val lastAccessTimesMs = ConcurrentHashMap<String/* branch name */, Long>()
+
     val targetBranches: Set<String>
-        get() = _targetBranches
+        get() = lastAccessTimesMs.keys
 
     fun onTargetBranch(branch: String) {
-        _targetBranches += branch
+        val now = System.currentTimeMillis()
+        val lastAccessTimeMs = lastAccessTimesMs[branch]
+        // we don't need millisecond precision here, so, avoid writing to the shared map on every request
+        if (lastAccessTimeMs == null || now - lastAccessTimeMs >= ACCESS_TIME_PRECISION_MS) {
+            lastAccessTimesMs[branch] = now
+        }
     }
 
     fun onRemovedBranch(branch: String) {
-        _targetBranches -= branch
+        lastAccessTimesMs -= branch
+    }
+
+    /**
+     * @return  last time when given branch was requested; `null` if given branch is not a target branch
+     */
+    fun getLastAccessTimeMs(branch: String): Long? {
+        return lastAccessTimesMs[branch]
+    }
+
+    companion object {
+        private const val ACCESS_TIME_PRECISION_MS = 1000L
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package org.inpertio.server.resource.config
+
+import tech.harmonysoft.oss.inpertio.client.ConfigProvider
+
+interface ResourceCacheParametersConfigProvider : ConfigProvider<ResourceCacheParameters>
+
+/**
+ * @param maxSizeBytes          max memory occupied by cached resources; non-positive value disables resources
+ *                              caching
+ * @param entryMaxSizeBytes     resources larger than this are not cached, they are always streamed from storage
+ * @param direct                defines whether cached resources are kept in direct (off-heap) buffers
+ */
+data class ResourceCacheParameters(val maxSizeBytes: Long, val entryMaxSizeBytes: Long, val direct: Boolean)
@@ -0,0 +1,33 @@
+package org.inpertio.server.resource.config.impl
+
+import org.inpertio.server.resource.config.ResourceCacheParameters
+import org.inpertio.server.resource.config.ResourceCacheParametersConfigProvider
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+
+@Component
+class ResourceCacheParametersConfigProviderImpl(
+    @Value("\${${Parameter.MAX_SIZE}:33554432}") maxSizeBytes: Long,
+    @Value("\${${Parameter.ENTRY_MAX_SIZE}:65536}") entryMaxSizeBytes: Long,
+    @Value("\${${Parameter.DIRECT}:false}") direct: Boolean
+) : ResourceCacheParametersConfigProvider {
+
+    private val parameters = ResourceCacheParameters(maxSizeBytes, entryMaxSizeBytes, direct)
+
+    override fun getData(): ResourceCacheParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): ResourceCacheParameters {
+        return data
+    }
+
+    private object Parameter {
+        const val MAX_SIZE = "resource.cache.max.size.bytes"
+        const val ENTRY_MAX_SIZE = "resource.cache.entry.max.size.bytes"
+        const val DIRECT = "resource.cache.direct"
+    }
+}
@@ -0,0 +1,19 @@
+package org.inpertio.server.resource.model
+
+import org.inpertio.server.git.service.ContentFile
+import java.nio.ByteBuffer
+
+/**
+ * @param hash          commit hash of the branch snapshot the resource is taken from
+ * @param file          resource file within the branch snapshot
+ * @param content       read-only resource content if it's cached in memory; `null` if it should be read
+ *                      from [file]
+ * @param gzipContent   read-only gzip-compressed resource content if it's requested and is available;
+ *                      `null` if plain content should be used
+ */
+class BranchResource(
+    val hash: String,
+    val file: ContentFile,
+    val content: ByteBuffer?,
+    val gzipContent: ByteBuffer?
+)
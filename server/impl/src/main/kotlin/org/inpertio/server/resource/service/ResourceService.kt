@@ -1,12 +1,29 @@
 package org.inpertio.server.resource.service
 
+import org.inpertio.server.resource.model.BranchResource
 import org.inpertio.server.util.ProcessingResult
-import java.io.InputStream
 
 interface ResourceService {
 
     /**
-     * Tries finding target resource in the target branch
+     * Tries finding target resource in the target branch and executes given action against it. Branch snapshot
+     * the resource belongs to is kept intact until the action completes, so, resource content can be streamed
+     * from the action. Content of small resources is provided from memory.
+     *
+     * @param gzipAccepted  defines whether gzip-compressed resource content should be provided when it's available
+     * @return  given action's call result; failure if target resource is not found
      */
-    fun getResource(branch: String, resourcePath: String): ProcessingResult<InputStream, String>
-}
\ No newline at end of file
+    fun <T : Any> withResource(
+        branch: String,
+        resourcePath: String,
+        gzipAccepted: Boolean,
+        action: (resource: BranchResource) -> T
+    ): ProcessingResult<T, String>
+
+    /**
+     * Allows checking whether target branch has changed without accessing the resource
+     *
+     * @return  commit hash of the target branch's current snapshot; `null` if it's not available
+     */
+    fun getCurrentHash(branch: String): String?
+}
@@ -0,0 +1,86 @@
+package org.inpertio.server.resource.service.impl
+
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics
+import org.inpertio.server.git.service.ContentFile
+import org.inpertio.server.resource.config.ResourceCacheParametersConfigProvider
+import org.inpertio.server.util.CompressionUtil
+import org.springframework.stereotype.Component
+import java.nio.ByteBuffer
+
+/**
+ * Small resources are requested constantly, so, their content is kept in memory. Content is cached by git blob
+ * id, i.e. it's shared by all commits and branches which have the same resource content. Least recently used
+ * resources are evicted when total size of the cached content exceeds configured limit.
+ *
+ * Gzip-compressed content variants are prepared on demand and are cached alongside the plain content.
+ */
+@Component
+class ResourceCache(
+    private val parametersConfigProvider: ResourceCacheParametersConfigProvider,
+    meterRegistry: MeterRegistry
+) {
+
+    private val parameters = parametersConfigProvider.data
+
+    private val cache: Cache<Key, ByteBuffer> = Caffeine.newBuilder()
+        .maximumWeight(Math.max(parameters.maxSizeBytes, 0L))
+        .weigher<Key, ByteBuffer> { _, content -> content.capacity() + ENTRY_OVERHEAD_BYTES }
+        .recordStats()
+        .build()
+
+    init {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME)
+    }
+
+    /**
+     * @return  read-only content of the given resource file if it's small enough to be cached in memory;
+     *          `null` otherwise
+     */
+    fun getContent(file: ContentFile): ByteBuffer? {
+        if (parameters.maxSizeBytes <= 0 || file.size > parametersConfigProvider.data.entryMaxSizeBytes) {
+            return null
+        }
+        return cache.get(Key(file.blobId, false)) {
+            toBuffer(file.openStream().use { it.readBytes() })
+        }?.duplicate()
+    }
+
+    /**
+     * @return  read-only gzip-compressed content of the given resource file if it's small enough to be cached
+     *          in memory and compression makes it smaller; `null` otherwise
+     */
+    fun getGzipContent(file: ContentFile): ByteBuffer? {
+        val content = getContent(file) ?: return null
+        val compressed = cache.get(Key(file.blobId, true)) {
+            val plain = ByteArray(content.remaining())
+            content.duplicate().get(plain)
+            // resources which don't compress well are remembered as well, so, they are not compressed again
+            CompressionUtil.gzip(plain.size.toLong()) { it.write(plain) }?.let { toBuffer(it) } ?: NOT_COMPRESSED
+        }
+        return if (compressed === NOT_COMPRESSED) {
+            null
+        } else {
+            compressed?.duplicate()
+        }
+    }
+
+    private fun toBuffer(bytes: ByteArray): ByteBuffer {
+        val buffer = if (parameters.direct) {
+            ByteBuffer.allocateDirect(bytes.size).put(bytes).apply { flip() }
+        } else {
+            ByteBuffer.wrap(bytes)
+        }
+        return buffer.asReadOnlyBuffer()
+    }
+
+    private data class Key(val blobId: String, val gzip: Boolean)
+
+    companion object {
+        private val NOT_COMPRESSED = ByteBuffer.allocate(0).asReadOnlyBuffer()
+        private const val CACHE_NAME = "inpertio.resource.content"
+        private const val ENTRY_OVERHEAD_BYTES = 128
+    }
+}
@@ -1,26 +1,33 @@
 package org.inpertio.server.resource.service.impl
 
 import org.inpertio.server.git.service.GitService
+import org.inpertio.server.resource.model.BranchResource
 import org.inpertio.server.resource.service.ResourceService
 import org.inpertio.server.util.ProcessingResult
 import org.slf4j.Logger
 import org.springframework.stereotype.Component
-import java.io.File
-import java.io.InputStream
 
 @Component
 class ResourceServiceImpl(
     private val gitService: GitService,
+    private val cache: ResourceCache,
     private val logger: Logger
 ) : ResourceService {
 
-    override fun getResource(branch: String, resourcePath: String): ProcessingResult<InputStream, String> {
+    override fun <T : Any> withResource(
+        branch: String,
+        resourcePath: String,
+        gzipAccepted: Boolean,
+        action: (resource: BranchResource) -> T
+    ): ProcessingResult<T, String> {
         logger.debug("Got a request for resource '{}' in branch '{}'", resourcePath, branch)
-        val result = gitService.withBranch<ProcessingResult<InputStream, String>>(branch) { _, rootDir ->
-            val resource = File(rootDir, resourcePath)
-            if (resource.isFile) {
-                logger.debug("Returning with content from '{}' in branch {}", resource.absolutePath, branch)
-                ProcessingResult.success(resource.inputStream())
+        val result = gitService.withBranch<ProcessingResult<T, String>>(branch) { hash, content ->
+            val resource = content.getFile(resourcePath)
+            if (resource != null) {
+                logger.debug("Returning with content from '{}' in branch {}", resource, branch)
+                val gzipContent = if (gzipAccepted) cache.getGzipContent(resource) else null
+                val branchResource = BranchResource(hash, resource, cache.getContent(resource), gzipContent)
+                ProcessingResult.success(action(branchResource))
             } else {
                 logger.info("No resource at path '{}' is found in branch '{}'", resourcePath, branch)
                 ProcessingResult.failure("no resource at path '$resourcePath' is found in branch '$branch'")
@@ -34,4 +41,8 @@ class ResourceServiceImpl(
             result
         }
     }
+
+    override fun getCurrentHash(branch: String): String? {
+        return gitService.getCurrentHash(branch)
+    }
 }
\ No newline at end of file
@@ -1,17 +1,26 @@
 package org.inpertio.server.resource.web.v1
 
+import org.inpertio.server.resource.model.BranchResource
 import org.inpertio.server.resource.service.ResourceService
 import org.inpertio.server.util.WebUtil
 import org.slf4j.Logger
-import org.springframework.core.io.InputStreamResource
-import org.springframework.core.io.InputStreamSource
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpRange
 import org.springframework.http.HttpStatus
-import org.springframework.http.ResponseEntity
-import org.springframework.util.AntPathMatcher
+import org.springframework.http.MediaType
+import org.springframework.http.MediaTypeFactory
 import org.springframework.web.bind.annotation.PathVariable
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RestController
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
 
 @RestController
 @RequestMapping("/api/resource/v1")
@@ -20,22 +29,199 @@ class ResourceControllerV1(
     private val logger: Logger
 ) {
 
+    /**
+     * Responses are tagged by the branch commit hash and resource path, so, a client which already has
+     * the resource for the current branch snapshot gets `304 Not Modified` without the resource being read.
+     *
+     * Single byte range requests are supported, that way large resources can be fetched partially.
+     *
+     * Clients which accept gzip encoding get compressed variant of resources cached in memory, it has its own
+     * entity tag. Byte ranges are always served from the plain content.
+     */
     @RequestMapping("/{branch}/**")
-    fun getResource(@PathVariable branch: String, request: HttpServletRequest): ResponseEntity<InputStreamSource> {
+    fun getResource(@PathVariable branch: String, request: HttpServletRequest, response: HttpServletResponse) {
         val resourcePath = WebUtil.getTrailingPath(request)
-        val result = service.getResource(branch, resourcePath)
-        if (logger.isDebugEnabled) {
-            logger.debug("Got the following result on attempt to get resource '{}' in branch '{}': {}",
-                         branch, resourcePath, resourcePath)
+        val gzipAccepted = WebUtil.acceptsGzip(request) && request.getHeader(HttpHeaders.RANGE) == null
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        service.getCurrentHash(branch)?.let { hash ->
+            val eTag = WebUtil.getETag(hash, resourcePath)
+            val gzipETag = WebUtil.getGzipETag(eTag)
+            val matchedETag = when {
+                WebUtil.isNotModified(request, eTag) -> eTag
+                gzipAccepted && WebUtil.isNotModified(request, gzipETag) -> gzipETag
+                else -> null
+            }
+            if (matchedETag != null) {
+                response.status = HttpStatus.NOT_MODIFIED.value()
+                response.setHeader(HttpHeaders.ETAG, matchedETag)
+                return
+            }
         }
-        return if (result.success) {
-            ResponseEntity.ok(InputStreamResource(result.successValue))
+
+        // the resource is transferred while its branch snapshot is pinned, so, it can't be removed concurrently
+        val result = service.withResource(branch, resourcePath, gzipAccepted) { resource ->
+            writeResource(request, response, resourcePath, resource)
+        }
+        if (!result.success) {
+            val body = result.failureValue.toByteArray()
+            response.status = HttpStatus.BAD_REQUEST.value()
+            response.setContentLength(body.size)
+            response.outputStream.write(body)
+        }
+    }
+
+    private fun writeResource(
+        request: HttpServletRequest,
+        response: HttpServletResponse,
+        resourcePath: String,
+        resource: BranchResource
+    ) {
+        val eTag = WebUtil.getETag(resource.hash, resourcePath)
+        val size = resource.file.size
+        response.setHeader(WebUtil.COMMIT_HASH_HEADER, resource.hash)
+        // resource might change at any time, clients are expected to revalidate it with the entity tag
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes")
+        response.contentType = getContentType(resourcePath)
+
+        val gzipContent = resource.gzipContent
+        if (gzipContent != null) {
+            response.setHeader(HttpHeaders.ETAG, WebUtil.getGzipETag(eTag))
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, WebUtil.GZIP_ENCODING)
+            response.setContentLength(gzipContent.remaining())
+            if (request.method != HttpMethod.HEAD.name) {
+                write(gzipContent, response.outputStream, 0L, gzipContent.remaining().toLong())
+            }
+            return
+        }
+
+        response.setHeader(HttpHeaders.ETAG, eTag)
+
+        val range = getRange(request, eTag, size)
+        if (range != null && range.isEmpty()) {
+            response.status = HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */$size")
+            response.setContentLength(0)
+            return
+        }
+
+        val start = range?.first ?: 0L
+        val length = range?.let { it.last - it.first + 1 } ?: size
+        if (range != null) {
+            response.status = HttpStatus.PARTIAL_CONTENT.value()
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes ${range.first}-${range.last}/$size")
+        }
+        response.setContentLengthLong(length)
+        if (request.method == HttpMethod.HEAD.name) {
+            return
+        }
+
+        logger.debug("Transferring {} bytes of resource {} starting from {}", length, resource.file, start)
+        val content = resource.content
+        val localFile = resource.file.localFile
+        if (content != null) {
+            write(content, response.outputStream, start, length)
+        } else if (localFile == null) {
+            resource.file.openStream().use {
+                copy(it, response.outputStream, start, length)
+            }
         } else {
-            ResponseEntity(InputStreamResource(result.failureValue.toByteArray().inputStream()), HttpStatus.BAD_REQUEST)
+            FileChannel.open(localFile.toPath(), StandardOpenOption.READ).use {
+                transfer(it, response.outputStream, start, length)
+            }
+        }
+    }
+
+    private fun getContentType(resourcePath: String): String {
+        return MediaTypeFactory.getMediaType(resourcePath)
+            .orElse(MediaType.APPLICATION_OCTET_STREAM)
+            .toString()
+    }
+
+    /**
+     * @return  `null` if the whole resource should be returned; an empty range if requested range can't be
+     *          satisfied; requested byte range otherwise
+     */
+    private fun getRange(request: HttpServletRequest, eTag: String, size: Long): LongRange? {
+        val rangeHeader = request.getHeader(HttpHeaders.RANGE) ?: return null
+        val ifRange = request.getHeader(HttpHeaders.IF_RANGE)
+        if (ifRange != null && ifRange != eTag) {
+            // client has an outdated resource version, so, it needs the whole resource
+            return null
+        }
+
+        val ranges = try {
+            HttpRange.parseRanges(rangeHeader)
+        } catch (e: IllegalArgumentException) {
+            logger.debug("Can't parse range header '{}'", rangeHeader, e)
+            return LongRange.EMPTY
+        }
+        if (ranges.size != 1) {
+            // multipart byte ranges are not supported, the whole resource is returned then
+            return null
+        }
+        if (size == 0L) {
+            return LongRange.EMPTY
+        }
+        val start = ranges[0].getRangeStart(size)
+        val end = ranges[0].getRangeEnd(size)
+        return if (start >= size || start > end) {
+            LongRange.EMPTY
+        } else {
+            start..end
+        }
+    }
+
+    /**
+     * Copies file bytes to the response. Note that it's not a zero-copy transfer - servlet output stream is
+     * neither a file nor a socket channel, so, [FileChannel.transferTo] copies through a temporary buffer and
+     * the channel built by [Channels.newChannel] copies through a heap array
+     */
+    private fun transfer(channel: FileChannel, output: OutputStream, start: Long, length: Long) {
+        val target = Channels.newChannel(output)
+        var position = start
+        val end = start + length
+        while (position < end) {
+            val transferred = channel.transferTo(position, end - position, target)
+            if (transferred <= 0) {
+                break
+            }
+            position += transferred
+        }
+    }
+
+    private fun write(content: ByteBuffer, output: OutputStream, start: Long, length: Long) {
+        val buffer = content.duplicate()
+        buffer.position(start.toInt())
+        buffer.limit((start + length).toInt())
+        val target = Channels.newChannel(output)
+        while (buffer.hasRemaining()) {
+            target.write(buffer)
+        }
+    }
+
+    private fun copy(input: InputStream, output: OutputStream, start: Long, length: Long) {
+        var toSkip = start
+        while (toSkip > 0) {
+            val skipped = input.skip(toSkip)
+            if (skipped <= 0) {
+                return
+            }
+            toSkip -= skipped
+        }
+        val buffer = ByteArray(COPY_BUFFER_SIZE)
+        var remaining = length
+        while (remaining > 0) {
+            val read = input.read(buffer, 0, Math.min(remaining, buffer.size.toLong()).toInt())
+            if (read < 0) {
+                return
+            }
+            output.write(buffer, 0, read)
+            remaining -= read
         }
     }
 
     companion object {
-        private val ANT_MATCHER = AntPathMatcher()
+        private const val COPY_BUFFER_SIZE = 8192
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package org.inpertio.server.util
+
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+import java.util.zip.GZIPOutputStream
+
+object CompressionUtil {
+
+    /**
+     * Compressing content smaller than this doesn't pay off - gzip header and trailer take 18 bytes already
+     */
+    const val MIN_COMPRESSED_LENGTH = 256L
+
+    /**
+     * Prepares gzip-compressed variant of the content written by the given callback
+     *
+     * @param plainLength   length of the uncompressed content
+     * @return              compressed content; `null` if it's not smaller than the uncompressed one or
+     *                      the content is too small to be compressed
+     */
+    fun gzip(plainLength: Long, write: (OutputStream) -> Unit): ByteArray? {
+        if (plainLength < MIN_COMPRESSED_LENGTH || plainLength > Int.MAX_VALUE) {
+            return null
+        }
+        val buffer = ByteArrayOutputStream((plainLength / 4).toInt())
+        GZIPOutputStream(buffer).use(write)
+        return if (buffer.size() < plainLength) {
+            buffer.toByteArray()
+        } else {
+            null
+        }
+    }
+}
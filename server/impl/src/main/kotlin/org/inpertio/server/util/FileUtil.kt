@@ -19,4 +19,19 @@ object FileUtil {
             throw IllegalStateException("Can't create directory at path ${dir.absolutePath}")
         }
     }
+
+    /**
+     * Normalizes given path relative to some root directory - removes leading, trailing and duplicate
+     * separators and `.` segments.
+     *
+     * @return  normalized path which uses `/` as a separator; `null` if given path contains `..` segments
+     */
+    fun normalizeRelativePath(path: String): String? {
+        val segments = path.split('/', '\\').filter { it.isNotEmpty() && it != "." }
+        return if (segments.contains("..")) {
+            null
+        } else {
+            segments.joinToString("/")
+        }
+    }
 }
\ No newline at end of file
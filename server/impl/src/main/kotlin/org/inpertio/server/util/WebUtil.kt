@@ -1,11 +1,20 @@
 package org.inpertio.server.util
 
+import org.springframework.http.HttpHeaders
 import org.springframework.util.AntPathMatcher
 import org.springframework.web.servlet.HandlerMapping
+import java.security.MessageDigest
 import javax.servlet.http.HttpServletRequest
 
 object WebUtil {
 
+    /**
+     * Name of the response header which holds commit hash of the branch snapshot the response is built from
+     */
+    const val COMMIT_HASH_HEADER = "X-Commit-Hash"
+
+    const val GZIP_ENCODING = "gzip"
+
     private val matcher = AntPathMatcher()
 
     /**
@@ -19,4 +28,64 @@ object WebUtil {
         val controllerPath = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE).toString()
         return matcher.extractPathWithinPattern(controllerPath, requestPath)
     }
-}
\ No newline at end of file
+
+    /**
+     * @return  strong entity tag which identifies response built from the given data
+     */
+    fun getETag(vararg parts: String): String {
+        val digest = MessageDigest.getInstance("SHA-1")
+        parts.forEachIndexed { i, part ->
+            if (i > 0) {
+                digest.update(0.toByte())
+            }
+            digest.update(part.toByteArray())
+        }
+        return digest.digest().joinToString(separator = "", prefix = "\"", postfix = "\"") {
+            String.format("%02x", it)
+        }
+    }
+
+    /**
+     * @return  entity tag of the gzip-compressed variant of the response tagged by the given entity tag
+     */
+    fun getGzipETag(eTag: String): String {
+        return "${eTag.removeSuffix("\"")}-$GZIP_ENCODING\""
+    }
+
+    /**
+     * @return  `true` if given request's `Accept-Encoding` header allows gzip-compressed response
+     */
+    fun acceptsGzip(request: HttpServletRequest): Boolean {
+        val acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING) ?: return false
+        var wildcardAccepted = false
+        for (candidate in acceptEncoding.split(",")) {
+            val parts = candidate.split(";")
+            val coding = parts[0].trim()
+            val accepted = parts.drop(1).none {
+                val parameter = it.trim()
+                parameter.startsWith("q=") && parameter.removePrefix("q=").toDoubleOrNull() == 0.0
+            }
+            if (coding.equals(GZIP_ENCODING, true) || coding.equals("x-gzip", true)) {
+                // explicit gzip preference overrides the wildcard
+                return accepted
+            }
+            if (coding == "*") {
+                wildcardAccepted = accepted
+            }
+        }
+        return wildcardAccepted
+    }
+
+    /**
+     * @return  `true` if given request's `If-None-Match` header matches given entity tag, i.e. client already
+     *          has the same response
+     */
+    fun isNotModified(request: HttpServletRequest, eTag: String): Boolean {
+        val ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH) ?: return false
+        // If-None-Match uses weak comparison, see RFC 7232
+        return ifNoneMatch.split(",").any {
+            val candidate = it.trim()
+            candidate == "*" || candidate.removePrefix("W/") == eTag
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.inpertio.cucumber.glue
+
+import io.cucumber.java.After
+import io.cucumber.java.en.Given
+import io.cucumber.java.en.Then
+import io.cucumber.java.en.When
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.assertj.core.api.Assertions.assertThat
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder
+import org.inpertio.server.git.config.LocalGitParameters
+import org.inpertio.server.git.config.LocalGitParametersConfigProvider
+import org.inpertio.server.git.config.RemoteGitParametersConfigProvider
+import org.inpertio.server.git.config.StorageMode
+import org.inpertio.server.git.config.TestEvictionParametersConfigProvider
+import org.inpertio.server.git.config.TestLocalGitParametersConfigProvider
+import org.inpertio.server.git.config.TestRefreshParametersConfigProvider
+import org.inpertio.server.git.service.BranchContent
+import org.inpertio.server.git.service.GitService
+import org.inpertio.server.git.service.TestSlowBranchSnapshotListener
+import org.inpertio.server.git.service.impl.AbsentBranchesCache
+import org.inpertio.server.git.service.impl.BranchesStateStorage
+import org.inpertio.server.git.service.impl.FileSystemBranchContent
+import org.inpertio.server.git.service.impl.GitServiceImpl
+import org.inpertio.server.git.service.impl.TargetBranchesManager
+import org.inpertio.test.util.TestUtil.fail
+import org.slf4j.LoggerFactory
+import org.springframework.beans.factory.annotation.Autowired
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class GitServiceStepDefinitions {
+
+    @Autowired private lateinit var applicationGitService: GitService
+    @Autowired private lateinit var remoteGitParametersConfigProvider: RemoteGitParametersConfigProvider
+    @Autowired private lateinit var evictionParametersConfigProvider: TestEvictionParametersConfigProvider
+    @Autowired private lateinit var refreshParametersConfigProvider: TestRefreshParametersConfigProvider
+    @Autowired private lateinit var slowBranchSnapshotListener: TestSlowBranchSnapshotListener
+    @Autowired private lateinit var localGitParametersConfigProvider: TestLocalGitParametersConfigProvider
+
+    /**
+     * Git service instance which is started by [startStandaloneGitService]. It keeps local data in its own
+     * root dir and has its own state, so, it can be restarted without interfering with the application's
+     * git service. All steps work with it when it's started
+     */
+    private var standaloneGitService: GitServiceImpl? = null
+    private var standaloneRootDir: File? = null
+
+    private val gitService: GitService
+        get() = standaloneGitService ?: applicationGitService
+
+    private val rememberedFileKeys = mutableMapOf<String/* branch:path */, Any>()
+
+    /**
+     * Branch snapshot which is held by a reader thread until [pinRelease] is counted down
+     */
+    @Volatile private var pinnedContent: BranchContent? = null
+    private var pinRelease: CountDownLatch? = null
+
+    @After
+    fun releasePinnedSnapshot() {
+        pinRelease?.countDown()
+        pinRelease = null
+        pinnedContent = null
+    }
+
+    @After
+    fun forgetFileKeys() {
+        rememberedFileKeys.clear()
+    }
+
+    @After
+    fun stopStandaloneGitService() {
+        standaloneGitService?.stopRefresh()
+        standaloneGitService = null
+        standaloneRootDir?.deleteRecursively()
+        standaloneRootDir = null
+    }
+
+    @Given("^branch idle TTL is (\\d+) ms$")
+    fun setBranchIdleTtl(ttlMs: Long) {
+        evictionParametersConfigProvider.setBranchIdleTtlMs(ttlMs)
+    }
+
+    @Given("^disk budget is (\\d+) bytes$")
+    fun setDiskBudget(budgetBytes: Long) {
+        evictionParametersConfigProvider.setDiskBudgetBytes(budgetBytes)
+    }
+
+    @Given("^storage mode is ([^\\s]+)$")
+    fun setStorageMode(storageMode: String) {
+        localGitParametersConfigProvider.setStorageMode(StorageMode.valueOf(storageMode))
+    }
+
+    @Given("^branches are updated on every refresh$")
+    fun updateBranchesOnEveryRefresh() {
+        refreshParametersConfigProvider.updateOnEveryRefresh()
+    }
+
+    @Given("^branch update timeout is (\\d+) ms$")
+    fun setBranchUpdateTimeout(timeoutMs: Long) {
+        refreshParametersConfigProvider.setBranchTimeoutMs(timeoutMs)
+    }
+
+    @Given("^next snapshot of branch ([^\\s]+) is prepared in (\\d+) ms$")
+    fun delayNextSnapshot(branch: String, delayMs: Long) {
+        slowBranchSnapshotListener.delayNextSnapshot(branch, delayMs)
+    }
+
+    @When("^branch ([^\\s]+) is prepared by git service$")
+    fun prepareBranch(branch: String) {
+        gitService.withBranch(branch) { _, _ -> Unit } ?: fail("Branch '$branch' is not prepared")
+    }
+
+    @Given("^standalone git service is started$")
+    fun startStandaloneGitService() {
+        val rootDir = Files.createTempDirectory("").toFile()
+        standaloneRootDir = rootDir
+        standaloneGitService = createStandaloneGitService(rootDir)
+    }
+
+    /**
+     * The standalone git service is stopped and a new instance is started with the same local data root dir
+     */
+    @When("^git service is restarted$")
+    fun restartGitService() {
+        val service = standaloneGitService ?: fail("Only standalone git service can be restarted")
+        val rootDir = standaloneRootDir ?: fail("Standalone git service has no local data root dir")
+        service.stopRefresh()
+        standaloneGitService = createStandaloneGitService(rootDir)
+    }
+
+    private fun createStandaloneGitService(rootDir: File): GitServiceImpl {
+        val parameters = LocalGitParameters(rootDir, localGitParametersConfigProvider.data.storageMode)
+        val localParametersConfigProvider = object : LocalGitParametersConfigProvider {
+
+            override fun getData(): LocalGitParameters {
+                return parameters
+            }
+
+            override fun refresh() {
+            }
+
+            override fun probe(): LocalGitParameters {
+                return data
+            }
+        }
+        val logger = LoggerFactory.getLogger(GitServiceImpl::class.java)
+        return GitServiceImpl(
+                targetBranchesManager = TargetBranchesManager(),
+                absentBranchesCache = AbsentBranchesCache(refreshParametersConfigProvider),
+                branchesStateStorage = BranchesStateStorage(localParametersConfigProvider, logger),
+                localGitParametersConfigProvider = localParametersConfigProvider,
+                remoteGitParametersConfigProvider = remoteGitParametersConfigProvider,
+                refreshParametersConfigProvider = refreshParametersConfigProvider,
+                evictionParametersConfigProvider = evictionParametersConfigProvider,
+                snapshotListeners = emptyList(),
+                meterRegistry = SimpleMeterRegistry(),
+                logger = logger
+        ).apply {
+            startRefresh()
+        }
+    }
+
+    @Then("^git service has file ([^\\s]+) in branch ([^\\s]+) with the following content:$")
+    fun verifyFileContent(path: String, branch: String, expectedContent: String) {
+        assertThat(getFileContent(path, branch)).isEqualTo(expectedContent)
+    }
+
+    /**
+     * Branches are updated by background refresh, so, we wait for that for a while
+     */
+    @Then("^git service eventually has file ([^\\s]+) in branch ([^\\s]+) with the following content:$")
+    fun verifyEventualFileContent(path: String, branch: String, expectedContent: String) {
+        waitFor("File $path in branch '$branch' doesn't have expected content") {
+            findFileContent(path, branch) == expectedContent
+        }
+    }
+
+    @When("^next snapshot of branch ([^\\s]+) is being prepared$")
+    fun awaitSnapshotPreparation(branch: String) {
+        waitFor("Next snapshot of branch '$branch' is not being prepared") {
+            slowBranchSnapshotListener.isDelayed(branch)
+        }
+    }
+
+    @Then("^update of branch ([^\\s]+) is cancelled$")
+    fun verifyUpdateCancelled(branch: String) {
+        waitFor("Update of branch '$branch' is not cancelled") {
+            slowBranchSnapshotListener.isCancelled(branch)
+        }
+    }
+
+    @Then("^snapshot of branch ([^\\s]+) has no git metadata$")
+    fun verifyNoGitMetadata(branch: String) {
+        val rootDir = getSnapshotRootDir(branch)
+        if (File(rootDir, ".git").exists()) {
+            fail("Snapshot of branch '$branch' at ${rootDir.absolutePath} has git metadata")
+        }
+    }
+
+    @When("^file ([^\\s]+) in snapshot of branch ([^\\s]+) is remembered$")
+    fun rememberFile(path: String, branch: String) {
+        rememberedFileKeys["$branch:$path"] = getFileKey(path, branch)
+    }
+
+    /**
+     * Hard links share the same file key (inode), so, the file is not written again if its key is the same
+     */
+    @Then("^file ([^\\s]+) in snapshot of branch ([^\\s]+) is linked to the remembered one$")
+    fun verifyFileLinked(path: String, branch: String) {
+        val rememberedKey = rememberedFileKeys["$branch:$path"]
+                            ?: fail("File $path of branch '$branch' is not remembered")
+        assertThat(getFileKey(path, branch)).isEqualTo(rememberedKey)
+    }
+
+    @When("^current snapshot of branch ([^\\s]+) is pinned$")
+    fun pinSnapshot(branch: String) {
+        val pinned = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        pinRelease = release
+        thread(isDaemon = true, name = "snapshot-reader") {
+            gitService.withBranch(branch) { _, content ->
+                pinnedContent = content
+                pinned.countDown()
+                release.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            }
+        }
+        if (!pinned.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            fail("Snapshot of branch '$branch' is not pinned in $WAIT_TIMEOUT_MS ms")
+        }
+    }
+
+    @Then("^pinned snapshot has file ([^\\s]+) with the following content:$")
+    fun verifyPinnedFileContent(path: String, expectedContent: String) {
+        val content = pinnedContent ?: fail("No snapshot is pinned")
+        val actualContent = content.getFile(path)?.openStream()?.use { String(it.readBytes()) }
+        assertThat(actualContent).isEqualTo(expectedContent)
+    }
+
+    @When("^pinned snapshot is released$")
+    fun releaseSnapshot() {
+        pinRelease?.countDown() ?: fail("No snapshot is pinned")
+    }
+
+    /**
+     * Retired snapshots are removed in background, so, we wait for that for a while
+     */
+    @Then("^branch ([^\\s]+) has a single snapshot on disk$")
+    fun verifySingleSnapshot(branch: String) {
+        val branchContentDir = File(localGitParametersConfigProvider.data.rootDir, "content/$branch")
+        waitFor("Obsolete snapshots of branch '$branch' are not removed") {
+            branchContentDir.list()?.size == 1
+        }
+    }
+
+    @Then("^local data has a single bare repo with branches ([^\\s]+)$")
+    fun verifyLocalRepo(rawBranches: String) {
+        val rootDir = localGitParametersConfigProvider.data.rootDir
+        if (File(rootDir, "repo").exists()) {
+            fail("Per-branch repos are found in ${rootDir.absolutePath}")
+        }
+        val repository = FileRepositoryBuilder().setGitDir(File(rootDir, "repo.git")).setBare().build()
+        try {
+            assertThat(repository.isBare).isTrue()
+            val localBranches = repository.refDatabase.getRefsByPrefix(Constants.R_HEADS).map {
+                it.name.substring(Constants.R_HEADS.length)
+            }
+            assertThat(localBranches).containsAll(rawBranches.split(","))
+        } finally {
+            repository.close()
+        }
+    }
+
+    private fun getFileKey(path: String, branch: String): Any {
+        val file = File(getSnapshotRootDir(branch), path)
+        return Files.readAttributes(file.toPath(), BasicFileAttributes::class.java).fileKey()
+               ?: fail("File key is not available for ${file.absolutePath}")
+    }
+
+    private fun getSnapshotRootDir(branch: String): File {
+        val content = gitService.withBranch(branch) { _, content -> content }
+                      ?: fail("Branch '$branch' is not available")
+        return (content as? FileSystemBranchContent)?.rootDir ?: fail("Branch '$branch' is not stored in file system")
+    }
+
+    private fun getFileContent(path: String, branch: String): String {
+        return findFileContent(path, branch) ?: fail("Branch '$branch' is not available")
+    }
+
+    /**
+     * @return  `null` if given branch is not available
+     */
+    private fun findFileContent(path: String, branch: String): String? {
+        return gitService.withBranch(branch) { _, branchContent ->
+            branchContent.getFile(path)?.openStream()?.use { String(it.readBytes()) } ?: ""
+        }
+    }
+
+    /**
+     * Branches are evicted by background refresh, so, we wait for that for a while. Branch snapshots are checked
+     * on disk because any request to the branch would mark it as recently used
+     */
+    @Then("^branch ([^\\s]+) is evicted$")
+    fun verifyBranchEvicted(branch: String) {
+        val branchContentDir = File(localGitParametersConfigProvider.data.rootDir, "content/$branch")
+        waitFor("Branch '$branch' is not evicted") {
+            branchContentDir.list()?.isNotEmpty() != true
+        }
+    }
+
+    private fun waitFor(error: String, condition: () -> Boolean) {
+        val deadlineMs = System.currentTimeMillis() + WAIT_TIMEOUT_MS
+        while (!condition()) {
+            if (System.currentTimeMillis() >= deadlineMs) {
+                fail("$error in $WAIT_TIMEOUT_MS ms")
+            }
+            Thread.sleep(WAIT_CHECK_INTERVAL_MS)
+        }
+    }
+
+    companion object {
+        private const val WAIT_TIMEOUT_MS = 20_000L
+        private const val WAIT_CHECK_INTERVAL_MS = 100L
+    }
+}
@@ -37,6 +37,13 @@ class GitStepDefinitions {
         remoteRepo.commit().setMessage(path).call()
     }
 
+    @Given("^remote repo is unavailable$")
+    fun makeRemoteRepoUnavailable() {
+        val repoDir = remoteRepo.repository.directory.parentFile
+        remoteRepo.close()
+        repoDir.deleteRecursively()
+    }
+
     private fun ensureBranchExists(branch: String) {
         val branches = remoteRepo.branchList().call()
         val branchExists = branches.any {
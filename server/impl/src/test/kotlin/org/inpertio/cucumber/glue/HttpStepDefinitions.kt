@@ -3,13 +3,20 @@ package org.inpertio.cucumber.glue
 import io.cucumber.java.en.Then
 import io.cucumber.java.en.When
 import org.assertj.core.api.Assertions.assertThat
+import org.inpertio.server.util.WebUtil
 import org.inpertio.test.http.HttpTestContext
 import org.inpertio.test.util.TestUtil.fail
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpMethod
 import java.net.HttpURLConnection
 import java.net.URL
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
 
 class HttpStepDefinitions {
 
@@ -19,9 +26,69 @@ class HttpStepDefinitions {
 
     @When("^GET request to ([^\\s]+) is made$")
     fun makeGetRequest(path: String) {
+        makeGetRequest(path, emptyMap())
+    }
+
+    @When("^GET request to ([^\\s]+) is made with header ([^\\s]+): (.+)$")
+    fun makeGetRequestWithHeader(path: String, headerName: String, headerValue: String) {
+        makeGetRequest(path, mapOf(headerName to headerValue))
+    }
+
+    @When("^GET request to ([^\\s]+) is made with the ETag of the last GET response$")
+    fun makeConditionalGetRequest(path: String) {
+        val lastResponse = context.getLastResponse(HttpMethod.GET) ?: fail("No GET response is found")
+        val eTag = lastResponse.getHeader(HttpHeaders.ETAG)
+                   ?: fail("Last GET request to ${lastResponse.url} has no ETag")
+        makeGetRequest(path, mapOf(HttpHeaders.IF_NONE_MATCH to eTag))
+    }
+
+    @When("^GET request to ([^\\s]+) is made since the commit of the last GET response$")
+    fun makeSinceCommitGetRequest(path: String) {
+        val lastResponse = context.getLastResponse(HttpMethod.GET) ?: fail("No GET response is found")
+        val hash = lastResponse.getHeader(WebUtil.COMMIT_HASH_HEADER)
+                   ?: fail("Last GET request to ${lastResponse.url} has no commit hash")
+        val separator = if (path.contains('?')) '&' else '?'
+        makeGetRequest("$path${separator}since=$hash", emptyMap())
+    }
+
+    @When("^(\\d+) concurrent GET requests to ([^\\s]+) are made$")
+    fun makeConcurrentGetRequests(count: Int, path: String) {
+        val executor = Executors.newFixedThreadPool(count)
+        try {
+            val start = CountDownLatch(1)
+            val futures = (1..count).map {
+                executor.submit(Callable {
+                    start.await()
+                    makeGetRequest(path, emptyMap())
+                })
+            }
+            start.countDown()
+            futures.forEach { it.get(CONCURRENT_REQUESTS_TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @When("^POST request to ([^\\s]+) is made with the following JSON:$")
+    fun makePostRequest(path: String, body: String) {
+        makeRequest(HttpMethod.POST, path, mapOf(HttpHeaders.CONTENT_TYPE to "application/json"), body)
+    }
+
+    private fun makeGetRequest(path: String, headers: Map<String, String>) {
+        makeRequest(HttpMethod.GET, path, headers, null)
+    }
+
+    private fun makeRequest(method: HttpMethod, path: String, headers: Map<String, String>, body: String?) {
         val url = "http://127.0.0.1:$port$path"
         val connection = (URL(url).openConnection() as HttpURLConnection).apply {
-            requestMethod = "GET"
+            requestMethod = method.name
+            headers.forEach { (name, value) -> setRequestProperty(name, value) }
+        }
+        if (body != null) {
+            connection.doOutput = true
+            connection.outputStream.use {
+                it.write(body.toByteArray())
+            }
         }
         val code = connection.responseCode
         val response = try {
@@ -29,9 +96,10 @@ class HttpStepDefinitions {
         } catch (e: Exception) {
             null
         }
+        val responseHeaders = connection.headerFields.filterKeys { it != null }
         connection.disconnect()
 
-        context.onResponse(url, HttpMethod.GET, response, code)
+        context.onResponse(url, method, response, code, responseHeaders)
     }
 
     @Then("^the last ([^\\s]+) request returns the following:$")
@@ -42,10 +110,31 @@ class HttpStepDefinitions {
         assertThat(String(content)).isEqualTo(expectedContent)
     }
 
+    @Then("^the last ([^\\s]+) request returns the following gzip-compressed content:$")
+    fun verifyLastResponseCompressedContent(rawMethod: String, expectedContent: String) {
+        val method = HttpMethod.valueOf(rawMethod)
+        val actual = context.getLastResponse(method) ?: fail("No $method response is found")
+        val content = actual.response ?: fail("Last $rawMethod request to ${actual.url} has no response")
+        assertThat(actual.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo(WebUtil.GZIP_ENCODING)
+        assertThat(String(GZIPInputStream(content.inputStream()).use { it.readBytes() })).isEqualTo(expectedContent)
+    }
+
     @Then("^the last ([^\\s]+) request has code (\\d+)$")
     fun verifyLastResponseCode(rawMethod: String, expectedCode: Int) {
         val method = HttpMethod.valueOf(rawMethod)
         val actual = context.getLastResponse(method) ?: fail("No $method response is found")
         assertThat(expectedCode).isEqualTo(actual.code)
     }
-}
\ No newline at end of file
+
+    @Then("^the last ([^\\s]+) request response contains the following:$")
+    fun verifyLastResponseContentPart(rawMethod: String, expectedContent: String) {
+        val method = HttpMethod.valueOf(rawMethod)
+        val actual = context.getLastResponse(method) ?: fail("No $method response is found")
+        val content = actual.response ?: fail("Last $rawMethod request to ${actual.url} has no response")
+        assertThat(String(content)).contains(expectedContent)
+    }
+
+    companion object {
+        private const val CONCURRENT_REQUESTS_TIMEOUT_SECONDS = 30L
+    }
+}
@@ -0,0 +1,72 @@
+package org.inpertio.cucumber.glue
+
+import io.cucumber.java.Before
+import io.cucumber.java.en.Then
+import io.cucumber.java.en.When
+import io.micrometer.core.instrument.Meter
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Statistic
+import org.assertj.core.api.Assertions.assertThat
+import org.inpertio.test.util.TestUtil.fail
+import org.springframework.beans.factory.annotation.Autowired
+
+class MeterStepDefinitions {
+
+    @Autowired private lateinit var meterRegistry: MeterRegistry
+
+    private val initialCounts = mutableMapOf<Meter.Id, Double>()
+
+    @Before
+    fun rememberInitialCounts() {
+        meterRegistry.meters.forEach {
+            initialCounts[it.id] = getCount(it)
+        }
+    }
+
+    @When("^meter counts are remembered$")
+    fun rememberCounts() {
+        rememberInitialCounts()
+    }
+
+    @Then("^meter ([^\\s]+)(?: with tags ([^\\s]+))? is incremented$")
+    fun verifyMeterIncremented(name: String, rawTags: String?) {
+        assertThat(getIncrement(name, rawTags)).describedAs("$name ${rawTags.orEmpty()} increment").isPositive()
+    }
+
+    @Then("^meter ([^\\s]+)(?: with tags ([^\\s]+))? is not incremented$")
+    fun verifyMeterNotIncremented(name: String, rawTags: String?) {
+        assertThat(getIncrement(name, rawTags)).describedAs("$name ${rawTags.orEmpty()} increment").isZero()
+    }
+
+    /**
+     * Some meters are updated by background tasks, so, we wait for that for a while
+     */
+    @Then("^meter ([^\\s]+)(?: with tags ([^\\s]+))? is eventually incremented$")
+    fun verifyMeterEventuallyIncremented(name: String, rawTags: String?) {
+        val deadlineMs = System.currentTimeMillis() + WAIT_TIMEOUT_MS
+        while (getIncrement(name, rawTags) <= 0.0) {
+            if (System.currentTimeMillis() >= deadlineMs) {
+                fail("Meter $name with tags ${rawTags.orEmpty()} is not incremented in $WAIT_TIMEOUT_MS ms")
+            }
+            Thread.sleep(WAIT_CHECK_INTERVAL_MS)
+        }
+    }
+
+    private fun getIncrement(name: String, rawTags: String?): Double {
+        val tags = rawTags?.split(",")?.flatMap { it.split("=", limit = 2) } ?: emptyList()
+        val meters = meterRegistry.find(name).tags(*tags.toTypedArray()).meters()
+        if (meters.isEmpty()) {
+            fail("No meter $name with tags ${rawTags.orEmpty()} is found")
+        }
+        return meters.sumByDouble { getCount(it) - (initialCounts[it.id] ?: 0.0) }
+    }
+
+    private fun getCount(meter: Meter): Double {
+        return meter.measure().filter { it.statistic == Statistic.COUNT }.sumByDouble { it.value }
+    }
+
+    companion object {
+        private const val WAIT_TIMEOUT_MS = 20_000L
+        private const val WAIT_CHECK_INTERVAL_MS = 100L
+    }
+}
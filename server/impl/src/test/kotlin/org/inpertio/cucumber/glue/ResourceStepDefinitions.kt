@@ -0,0 +1,15 @@
+package org.inpertio.cucumber.glue
+
+import io.cucumber.java.en.Given
+import org.inpertio.server.resource.config.TestResourceCacheParametersConfigProvider
+import org.springframework.beans.factory.annotation.Autowired
+
+class ResourceStepDefinitions {
+
+    @Autowired private lateinit var cacheParametersConfigProvider: TestResourceCacheParametersConfigProvider
+
+    @Given("^resources larger than (\\d+) bytes are not cached$")
+    fun setCacheEntryMaxSize(entryMaxSizeBytes: Long) {
+        cacheParametersConfigProvider.setEntryMaxSizeBytes(entryMaxSizeBytes)
+    }
+}
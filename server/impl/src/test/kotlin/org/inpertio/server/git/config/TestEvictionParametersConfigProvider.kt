@@ -0,0 +1,39 @@
+package org.inpertio.server.git.config
+
+import org.inpertio.test.util.TestAware
+import org.springframework.context.annotation.Primary
+import org.springframework.stereotype.Component
+
+@Primary
+@Component
+class TestEvictionParametersConfigProvider : EvictionParametersConfigProvider, TestAware {
+
+    @Volatile private var parameters = DEFAULT_PARAMETERS
+
+    override fun getData(): EvictionParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): EvictionParameters {
+        return data
+    }
+
+    fun setBranchIdleTtlMs(branchIdleTtlMs: Long) {
+        parameters = parameters.copy(branchIdleTtlMs = branchIdleTtlMs)
+    }
+
+    fun setDiskBudgetBytes(diskBudgetBytes: Long) {
+        parameters = parameters.copy(diskBudgetBytes = diskBudgetBytes)
+    }
+
+    override fun onTestEnd() {
+        parameters = DEFAULT_PARAMETERS
+    }
+
+    companion object {
+        private val DEFAULT_PARAMETERS = EvictionParameters(branchIdleTtlMs = 86_400_000L, diskBudgetBytes = 0L)
+    }
+}
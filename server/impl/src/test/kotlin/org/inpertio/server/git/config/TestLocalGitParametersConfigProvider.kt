@@ -12,12 +12,14 @@ class TestLocalGitParametersConfigProvider(
     private val logger: Logger
 ) : LocalGitParametersConfigProvider, TestAware {
 
-    private val parameters: LocalGitParameters
+    private val defaultParameters: LocalGitParameters
+    @Volatile private var parameters: LocalGitParameters
 
     init {
         val localRepoRoot = Files.createTempDirectory("").toFile()
         logger.info("Using the following local data root dir: {}", localRepoRoot.absolutePath)
-        parameters = LocalGitParameters(localRepoRoot)
+        defaultParameters = LocalGitParameters(localRepoRoot)
+        parameters = defaultParameters
     }
 
     override fun getData(): LocalGitParameters {
@@ -31,7 +33,12 @@ class TestLocalGitParametersConfigProvider(
         return data
     }
 
+    fun setStorageMode(storageMode: StorageMode) {
+        parameters = parameters.copy(storageMode = storageMode)
+    }
+
     override fun onTestEnd() {
+        parameters = defaultParameters
         parameters.rootDir.deleteRecursively()
         logger.info("Cleaned local data root {}", parameters.rootDir.absolutePath)
     }
@@ -0,0 +1,47 @@
+package org.inpertio.server.git.config
+
+import org.inpertio.test.util.TestAware
+import org.springframework.context.annotation.Primary
+import org.springframework.stereotype.Component
+
+@Primary
+@Component
+class TestRefreshParametersConfigProvider : RefreshParametersConfigProvider, TestAware {
+
+    @Volatile private var parameters = DEFAULT_PARAMETERS
+
+    override fun getData(): RefreshParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): RefreshParameters {
+        return data
+    }
+
+    fun updateOnEveryRefresh() {
+        parameters = parameters.copy(branchIntervalMs = 0L, jitterMs = 0L)
+    }
+
+    fun setBranchTimeoutMs(branchTimeoutMs: Long) {
+        parameters = parameters.copy(branchTimeoutMs = branchTimeoutMs)
+    }
+
+    override fun onTestEnd() {
+        parameters = DEFAULT_PARAMETERS
+    }
+
+    companion object {
+        private val DEFAULT_PARAMETERS = RefreshParameters(
+                periodMs = 5_000L,
+                branchIntervalMs = 60_000L,
+                jitterMs = 10_000L,
+                awaitTimeoutMs = 30_000L,
+                absentBranchTtlMs = 30_000L,
+                workersCount = 4,
+                branchTimeoutMs = 60_000L
+        )
+    }
+}
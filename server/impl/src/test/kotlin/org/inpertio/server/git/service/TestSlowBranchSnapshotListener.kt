@@ -0,0 +1,45 @@
+package org.inpertio.server.git.service
+
+import org.inpertio.test.util.TestAware
+import org.springframework.stereotype.Component
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Simulates slow branch updates - delays preparation of the next snapshot of the configured branches
+ */
+@Component
+class TestSlowBranchSnapshotListener : BranchSnapshotListener, TestAware {
+
+    private val delaysMs = ConcurrentHashMap<String/* branch */, Long>()
+    private val delayedBranches: MutableSet<String> = ConcurrentHashMap.newKeySet()
+    private val cancelledBranches: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    fun delayNextSnapshot(branch: String, delayMs: Long) {
+        delaysMs[branch] = delayMs
+    }
+
+    fun isDelayed(branch: String): Boolean {
+        return delayedBranches.contains(branch)
+    }
+
+    fun isCancelled(branch: String): Boolean {
+        return cancelledBranches.contains(branch)
+    }
+
+    override fun onSnapshotPrepared(branch: String, hash: String, content: BranchContent) {
+        val delayMs = delaysMs.remove(branch) ?: return
+        delayedBranches += branch
+        try {
+            Thread.sleep(delayMs)
+        } catch (e: InterruptedException) {
+            cancelledBranches += branch
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    override fun onTestEnd() {
+        delaysMs.clear()
+        delayedBranches.clear()
+        cancelledBranches.clear()
+    }
+}
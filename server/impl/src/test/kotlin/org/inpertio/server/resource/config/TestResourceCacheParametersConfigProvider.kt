@@ -0,0 +1,39 @@
+package org.inpertio.server.resource.config
+
+import org.inpertio.test.util.TestAware
+import org.springframework.context.annotation.Primary
+import org.springframework.stereotype.Component
+
+@Primary
+@Component
+class TestResourceCacheParametersConfigProvider : ResourceCacheParametersConfigProvider, TestAware {
+
+    @Volatile private var parameters = DEFAULT_PARAMETERS
+
+    override fun getData(): ResourceCacheParameters {
+        return parameters
+    }
+
+    override fun refresh() {
+    }
+
+    override fun probe(): ResourceCacheParameters {
+        return data
+    }
+
+    fun setEntryMaxSizeBytes(entryMaxSizeBytes: Long) {
+        parameters = parameters.copy(entryMaxSizeBytes = entryMaxSizeBytes)
+    }
+
+    override fun onTestEnd() {
+        parameters = DEFAULT_PARAMETERS
+    }
+
+    companion object {
+        private val DEFAULT_PARAMETERS = ResourceCacheParameters(
+                maxSizeBytes = 33_554_432L,
+                entryMaxSizeBytes = 65_536L,
+                direct = false
+        )
+    }
+}
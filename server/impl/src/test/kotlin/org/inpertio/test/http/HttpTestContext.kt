@@ -10,12 +10,19 @@ class HttpTestContext : TestAware {
 
     private val responses = ConcurrentHashMap<HttpMethod, List<ResponseEntry>>()
 
-    fun onResponse(url: String, method: HttpMethod, data: ByteArray?, code: Int) {
+    fun onResponse(
+        url: String,
+        method: HttpMethod,
+        data: ByteArray?,
+        code: Int,
+        headers: Map<String, List<String>> = emptyMap()
+    ) {
+        val entry = ResponseEntry(url, data, code, headers)
         responses.compute(method) { _, entries ->
             if (entries == null) {
-                listOf(ResponseEntry(url, data, code))
+                listOf(entry)
             } else {
-                entries + ResponseEntry(url, data, code)
+                entries + entry
             }
         }
     }
@@ -28,5 +35,15 @@ class HttpTestContext : TestAware {
         responses.clear()
     }
 
-    class ResponseEntry(val url: String, val response: ByteArray?, val code: Int)
+    class ResponseEntry(
+        val url: String,
+        val response: ByteArray?,
+        val code: Int,
+        val headers: Map<String, List<String>>
+    ) {
+
+        fun getHeader(name: String): String? {
+            return headers.entries.firstOrNull { it.key.equals(name, ignoreCase = true) }?.value?.firstOrNull()
+        }
+    }
 }
\ No newline at end of file
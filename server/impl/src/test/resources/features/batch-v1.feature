@@ -0,0 +1,55 @@
+Feature: Batch processing v.1
+
+  Scenario: Multiple queries
+
+    Given remote repo has file team1/common/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: common-value1
+      """
+
+    And remote repo has file team1/production/production.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: production-value1
+      """
+
+    When POST request to /api/batch/v1 is made with the following JSON:
+      """
+      {
+        "queries": [
+          { "branch": "test-branch", "paths": ["team1/common"] },
+          { "branch": "test-branch", "paths": ["team1/common", "team1/production"] },
+          { "branch": "test-branch", "paths": ["team1/common"] }
+        ]
+      }
+      """
+
+    Then the last POST request has code 200
+    And the last POST request response contains the following:
+      """
+      "configs":{"my-app.key1":"common-value1"}
+      """
+    And the last POST request response contains the following:
+      """
+      "configs":{"my-app.key1":"production-value1"}
+      """
+
+  Scenario: Unknown path
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When POST request to /api/batch/v1 is made with the following JSON:
+      """
+      { "queries": [ { "branch": "test-branch", "paths": ["team2"] } ] }
+      """
+
+    Then the last POST request has code 200
+    And the last POST request response contains the following:
+      """
+      "error":"path 'team2' doesn't exist in branch test-branch"
+      """
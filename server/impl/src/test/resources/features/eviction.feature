@@ -0,0 +1,69 @@
+Feature: Branches eviction
+
+  Scenario: Idle branch is evicted
+
+    Given remote repo has file team1/common.yml in branch idle-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branch idle TTL is 1 ms
+
+    When branch idle-branch is prepared by git service
+
+    Then branch idle-branch is evicted
+
+  Scenario: Least recently used branch is evicted when disk budget is exceeded
+
+    Given remote repo has file team1/common.yml in branch old-branch with the following content:
+      """
+      my-app:
+        key1: old-value
+      """
+    And remote repo has file team1/common.yml in branch new-branch with the following content:
+      """
+      my-app:
+        key1: new-value
+      """
+    And disk budget is 1 bytes
+
+    When branch old-branch is prepared by git service
+    And branch new-branch is prepared by git service
+
+    Then branch old-branch is evicted
+    And git service has file team1/common.yml in branch new-branch with the following content:
+      """
+      my-app:
+        key1: new-value
+      """
+
+  Scenario: Branch requested during refresh is not evicted
+
+    Given remote repo has file team1/common.yml in branch slow-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And remote repo has file team1/common.yml in branch new-branch with the following content:
+      """
+      my-app:
+        key1: new-value
+      """
+    And branches are updated on every refresh
+    And branch slow-branch is prepared by git service
+    And next snapshot of branch slow-branch is prepared in 3000 ms
+
+    When remote repo has file team1/common.yml in branch slow-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+    And next snapshot of branch slow-branch is being prepared
+    And branch idle TTL is 1 ms
+    And branch new-branch is prepared by git service
+
+    Then git service has file team1/common.yml in branch new-branch with the following content:
+      """
+      my-app:
+        key1: new-value
+      """
@@ -71,4 +71,260 @@ Feature: Key/value processing v.1
 
     When GET request to /api/keyValue/v1/master/team1 is made
 
-    Then the last GET request has code 400
\ No newline at end of file
+    Then the last GET request has code 400
+
+  Scenario: Absent branch is remembered
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValue/v1/absent-branch/team1 is made
+    And GET request to /api/keyValue/v1/absent-branch/team1 is made
+
+    Then the last GET request has code 400
+    And meter inpertio.git.branch.absent.hits is incremented
+
+  Scenario: Absent branch is available as soon as it appears in remote repo
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValue/v1/late-branch/team1 is made
+    And remote repo has file team1/common.yml in branch late-branch with the following content:
+      """
+      my-app:
+        key1: late-value
+      """
+
+    Then git service eventually has file team1/common.yml in branch late-branch with the following content:
+      """
+      my-app:
+        key1: late-value
+      """
+
+  Scenario: Repeated request
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1 is made
+    And GET request to /api/keyValue/v1/test-branch/team1/ is made
+
+    Then the last GET request returns the following:
+      """
+      my-app.key1=value1
+      """
+    And meter cache.gets with tags cache=inpertio.config.results,result=hit is incremented
+
+  Scenario: Hot configs are pre-rendered for new snapshot
+
+    Given remote repo has file team1/app.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      common:
+        key2: value2
+      """
+    And branches are updated on every refresh
+
+    When GET request to /api/keyValue/v1/test-branch/team1 is made
+    And GET request to /api/keyValue/v1/test-branch/team1 is made
+    And GET request to /api/keyValue/v1/test-branch/team1/app.yml is made
+    And remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      not-a-map
+      """
+    And git service eventually has file team1/common.yml in branch test-branch with the following content:
+      """
+      not-a-map
+      """
+    And meter counts are remembered
+    And GET request to /api/keyValue/v1/test-branch/team1/app.yml is made
+
+    Then the last GET request returns the following:
+      """
+      my-app.key1=value1
+      """
+    And meter cache.gets with tags cache=inpertio.config.results,result=hit is incremented
+
+  Scenario: Nested structures
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        int-key: 1
+        float-key: 1.5
+        boolean-key: true
+        empty-map: {}
+        empty-list: []
+        nested-list:
+          - [value1, value2]
+          - nested-key: value3
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1 is made
+
+    Then the last GET request returns the following:
+      """
+      my-app.int-key=1
+      my-app.float-key=1.5
+      my-app.boolean-key=true
+      my-app.nested-list[0][0]=value1
+      my-app.nested-list[0][1]=value2
+      my-app.nested-list[1].nested-key=value3
+      """
+
+  Scenario: Not modified configs
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1 is made
+    And GET request to /api/keyValue/v1/test-branch/team1 is made with the ETag of the last GET response
+
+    Then the last GET request has code 304
+
+  Scenario: No changes since the current commit
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1 is made
+    And GET request to /api/keyValueDiff/v1/test-branch/team1 is made since the commit of the last GET response
+
+    Then the last GET request returns the following:
+      """
+      """
+
+  Scenario: Changes since unknown commit
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValueDiff/v1/test-branch/team1?since=0123456789012345678901234567890123456789 is made
+
+    Then the last GET request has code 400
+
+  Scenario: Changes since previous commit
+
+    Given remote repo has file team1/common.yml in branch diff-base with the following content:
+      """
+      my-app:
+        key1: value1
+        key2: value2
+        key3: value3
+      """
+    And remote repo has file team1/common.yml in branch diff-target with the following content:
+      """
+      my-app:
+        key1: value1
+        key2: changed
+        key4: value4
+      """
+
+    When GET request to /api/keyValue/v1/diff-base/team1 is made
+    And GET request to /api/keyValueDiff/v1/diff-target/team1 is made since the commit of the last GET response
+
+    Then the last GET request returns the following:
+      """
+      +my-app.key4=value4
+      ~my-app.key2=changed
+      -my-app.key3
+      """
+
+  Scenario: Changes since commit of another branch
+
+    Given remote repo has file team1/common.yml in branch diff-base with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And remote repo has file team1/common.yml in branch diff-target with the following content:
+      """
+      my-app:
+        key1: changed
+      """
+
+    When GET request to /api/keyValue/v1/diff-target/team1 is made
+    And GET request to /api/keyValueDiff/v1/diff-base/team1 is made since the commit of the last GET response
+
+    Then the last GET request has code 400
+
+  Scenario: No changes during watch
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1 is made
+    And GET request to /api/keyValueWatch/v1/test-branch/team1?timeoutMs=200 is made since the commit of the last GET response
+
+    Then the last GET request has code 304
+    And meter cache.gets with tags cache=inpertio.config.watch.fingerprints,result=hit is incremented
+
+  Scenario: JSON format
+
+    Given remote repo has file team1/test-app.yml in branch test-branch with the following content:
+      """
+      my-app:
+        simple-key: my-value
+        multiline-key: "line1\nline2=value"
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1/test-app.yml is made with header Accept: application/json
+
+    Then the last GET request returns the following:
+      """
+      {"my-app.simple-key":"my-value","my-app.multiline-key":"line1\nline2=value"}
+      """
+
+  Scenario: Unsupported format
+
+    Given remote repo has file team1/test-app.yml in branch test-branch with the following content:
+      """
+      my-app:
+        simple-key: my-value
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1/test-app.yml is made with header Accept: application/xml
+
+    Then the last GET request has code 406
+
+  Scenario: Concurrent first requests
+
+    Given remote repo has file team1/common.yml in branch concurrent-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When 8 concurrent GET requests to /api/keyValue/v1/concurrent-branch/team1 are made
+
+    Then the last GET request returns the following:
+      """
+      my-app.key1=value1
+      """
+    And meter inpertio.git.update.coalesced with tags scope=branch is incremented
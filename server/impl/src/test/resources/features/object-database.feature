@@ -0,0 +1,118 @@
+Feature: Object database storage mode
+
+  Scenario: Key/value configs
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/common/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: common-value1
+        key2: common-value2
+      """
+    And remote repo has file team1/production/production-common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key2: production-value2
+      """
+
+    When GET request to /api/keyValue/v1/test-branch/team1/common,team1/production is made
+
+    Then the last GET request returns the following:
+      """
+      my-app.key1=common-value1
+      my-app.key2=production-value2
+      """
+
+  Scenario: Key/value changes since previous commit
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/common.yml in branch diff-base with the following content:
+      """
+      my-app:
+        key1: value1
+        key2: value2
+      """
+    And remote repo has file team1/common.yml in branch diff-target with the following content:
+      """
+      my-app:
+        key1: value1
+        key2: changed
+      """
+
+    When GET request to /api/keyValue/v1/diff-base/team1 is made
+    And GET request to /api/keyValueDiff/v1/diff-target/team1 is made since the commit of the last GET response
+
+    Then the last GET request returns the following:
+      """
+      ~my-app.key2=changed
+      """
+
+  Scenario: Resource
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made
+
+    Then the last GET request returns the following:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+  Scenario: Resource range
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made with header Range: bytes=0-7
+
+    Then the last GET request has code 206
+    And the last GET request returns the following:
+      """
+      my-team:
+      """
+
+  Scenario: Absent resource
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/absent.yml is made
+
+    Then the last GET request has code 400
+
+  Scenario: New commit is served
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branches are updated on every refresh
+    And branch test-branch is prepared by git service
+
+    When remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+    Then git service eventually has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
@@ -0,0 +1,100 @@
+Feature: Background refresh
+
+  Scenario: Remote changes are picked up in background
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branches are updated on every refresh
+    And branch test-branch is prepared by git service
+
+    When remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+    Then git service eventually has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+  Scenario: Requests don't wait for remote repo
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branches are updated on every refresh
+    And branch test-branch is prepared by git service
+
+    When remote repo is unavailable
+    And GET request to /api/keyValue/v1/test-branch/team1 is made
+
+    Then the last GET request returns the following:
+      """
+      my-app.key1=value1
+      """
+
+  Scenario: Unchanged branch is skipped
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branches are updated on every refresh
+
+    When branch test-branch is prepared by git service
+
+    Then meter inpertio.git.branch.check with tags result=skipped is eventually incremented
+    And git service has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+  Scenario: Slow branch doesn't delay other branches
+
+    Given remote repo has file team1/common.yml in branch fast-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And remote repo has file team1/common.yml in branch slow-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branches are updated on every refresh
+    And branch update timeout is 1000 ms
+    And branch fast-branch is prepared by git service
+    And branch slow-branch is prepared by git service
+    And next snapshot of branch slow-branch is prepared in 30000 ms
+
+    When remote repo has file team1/common.yml in branch fast-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+    And remote repo has file team1/common.yml in branch slow-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+    Then git service eventually has file team1/common.yml in branch fast-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+    And update of branch slow-branch is cancelled
+    And git service eventually has file team1/common.yml in branch slow-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
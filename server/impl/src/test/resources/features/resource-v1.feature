@@ -14,4 +14,125 @@ Feature: Resources processing v.1
       """
       my-team:
         my-key: my-value
-      """
\ No newline at end of file
+      """
+
+  Scenario: Not modified resource
+
+    Given remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made
+    And GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made with the ETag of the last GET response
+
+    Then the last GET request has code 304
+
+  Scenario: Resource range
+
+    Given remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made with header Range: bytes=0-7
+
+    Then the last GET request has code 206
+    And the last GET request returns the following:
+      """
+      my-team:
+      """
+
+  Scenario: Compressed resource
+
+    Given remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        service1:
+          host: service1.my-team.example.com
+          port: 8443
+          login: my-team-service1-login
+        service2:
+          host: service2.my-team.example.com
+          port: 8443
+          login: my-team-service2-login
+        service3:
+          host: service3.my-team.example.com
+          port: 8443
+          login: my-team-service3-login
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made with header Accept-Encoding: gzip
+
+    Then the last GET request returns the following gzip-compressed content:
+      """
+      my-team:
+        service1:
+          host: service1.my-team.example.com
+          port: 8443
+          login: my-team-service1-login
+        service2:
+          host: service2.my-team.example.com
+          port: 8443
+          login: my-team-service2-login
+        service3:
+          host: service3.my-team.example.com
+          port: 8443
+          login: my-team-service3-login
+      """
+
+  Scenario: Repeated resource request
+
+    Given remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made
+    And GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made
+
+    Then the last GET request returns the following:
+      """
+      my-team:
+        my-key: my-value
+      """
+    And meter cache.gets with tags cache=inpertio.resource.content,result=hit is incremented
+
+  Scenario: Large resource
+
+    Given remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+    And resources larger than 16 bytes are not cached
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made
+
+    Then the last GET request returns the following:
+      """
+      my-team:
+        my-key: my-value
+      """
+    And meter cache.gets with tags cache=inpertio.resource.content is not incremented
+
+  Scenario: Large resource range
+
+    Given remote repo has file team1/test-app/common.yml in branch test-branch with the following content:
+      """
+      my-team:
+        my-key: my-value
+      """
+    And resources larger than 16 bytes are not cached
+
+    When GET request to /api/resource/v1/test-branch/team1/test-app/common.yml is made with header Range: bytes=11-16
+
+    Then the last GET request has code 206
+    And the last GET request returns the following:
+      """
+      my-key
+      """
+    And meter cache.gets with tags cache=inpertio.resource.content is not incremented
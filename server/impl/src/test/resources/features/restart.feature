@@ -0,0 +1,40 @@
+Feature: Restart
+
+  Scenario: Branch with slashes in its name is restored
+
+    Given remote repo has file team1/common.yml in branch feature/x with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And standalone git service is started
+
+    When branch feature/x is prepared by git service
+    And remote repo is unavailable
+    And git service is restarted
+
+    Then git service has file team1/common.yml in branch feature/x with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+  Scenario: Branch is restored in object database storage mode
+
+    Given storage mode is OBJECT_DATABASE
+    And remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And standalone git service is started
+
+    When branch test-branch is prepared by git service
+    And remote repo is unavailable
+    And git service is restarted
+
+    Then git service has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
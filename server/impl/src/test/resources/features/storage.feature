@@ -0,0 +1,102 @@
+Feature: Branch snapshots storage
+
+  Scenario: Snapshot has no git metadata
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When branch test-branch is prepared by git service
+
+    Then snapshot of branch test-branch has no git metadata
+    And git service has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+  Scenario: Unchanged files are linked to the previous snapshot
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And remote repo has file team1/changed.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key2: value2
+      """
+    And branches are updated on every refresh
+    And branch test-branch is prepared by git service
+    And file team1/common.yml in snapshot of branch test-branch is remembered
+
+    When remote repo has file team1/changed.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key2: changed
+      """
+
+    Then git service eventually has file team1/changed.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key2: changed
+      """
+    And file team1/common.yml in snapshot of branch test-branch is linked to the remembered one
+
+  Scenario: All branches are fetched into a single bare repo
+
+    Given remote repo has file team1/common.yml in branch branch1 with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And remote repo has file team1/common.yml in branch branch2 with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+    When branch branch1 is prepared by git service
+    And branch branch2 is prepared by git service
+
+    Then local data has a single bare repo with branches branch1,branch2
+    And git service has file team1/common.yml in branch branch2 with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+  Scenario: Obsolete snapshot is removed after its last reader is done
+
+    Given remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+    And branches are updated on every refresh
+    And branch test-branch is prepared by git service
+    And current snapshot of branch test-branch is pinned
+
+    When remote repo has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+
+    Then git service eventually has file team1/common.yml in branch test-branch with the following content:
+      """
+      my-app:
+        key1: value2
+      """
+    And pinned snapshot has file team1/common.yml with the following content:
+      """
+      my-app:
+        key1: value1
+      """
+
+    When pinned snapshot is released
+
+    Then branch test-branch has a single snapshot on disk